@@ -0,0 +1,148 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.ads.identifier.AdvertisingIdClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide advertising ID cache.
+ *
+ * AdvertisingIdClient binds to Play Services and often takes 100+ ms, so the
+ * lookup runs once on the collector pool when the module is created, and
+ * later calls are served from memory. Callers that arrive during a lookup
+ * wait on that lookup instead of starting their own. The cached value is
+ * refreshed in the background on resume or once it is older than an hour.
+ */
+final class AdIdProvider {
+    private static final String TAG = "MySdk";
+    private static final long REFRESH_INTERVAL_MS = 60 * 60 * 1000;
+    private static final LatencyHistogram LOOKUP_LATENCY = SdkMetrics.histogram("adId.lookup");
+    private static final AtomicLong LOOKUP_FAILURES = SdkMetrics.counter("adId.failures");
+
+    interface Callback {
+        void onResult(Info info, Exception error);
+    }
+
+    static final class Info {
+        final String id;
+        final boolean limitAdTracking;
+        final long fetchedAt;
+
+        Info(String id, boolean limitAdTracking, long fetchedAt) {
+            this.id = id;
+            this.limitAdTracking = limitAdTracking;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private static volatile AdIdProvider instance;
+
+    private final Context context;
+    private final Object lock = new Object();
+    private volatile Info cached;
+    private List<Callback> waiters;
+    private boolean inFlight;
+
+    static AdIdProvider get(Context context) {
+        AdIdProvider current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (AdIdProvider.class) {
+            if (instance == null) {
+                instance = new AdIdProvider(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    private AdIdProvider(Context context) {
+        this.context = context;
+    }
+
+    // Start the first lookup early so getAdId is usually served from memory
+    void warm() {
+        if (cached == null) {
+            fetch(null);
+        }
+    }
+
+    void refreshIfStale() {
+        Info info = cached;
+        if (info == null || System.currentTimeMillis() - info.fetchedAt > REFRESH_INTERVAL_MS) {
+            fetch(null);
+        }
+    }
+
+    // Serve the cached value, or join the in-flight lookup when there is none yet
+    void request(Callback callback) {
+        Info info = cached;
+        if (info != null) {
+            callback.onResult(info, null);
+            refreshIfStale();
+            return;
+        }
+        fetch(callback);
+    }
+
+    private void fetch(Callback callback) {
+        synchronized (lock) {
+            if (callback != null) {
+                if (waiters == null) {
+                    waiters = new ArrayList<>(2);
+                }
+                waiters.add(callback);
+            }
+            if (inFlight) {
+                return;
+            }
+            inFlight = true;
+        }
+        try {
+            CollectorExecutor.execute(this::lookup);
+        } catch (Exception e) {
+            complete(null, e);
+        }
+    }
+
+    private void lookup() {
+        Info info = null;
+        Exception error = null;
+        long start = LOOKUP_LATENCY.start();
+        try {
+            AdvertisingIdClient.Info adInfo = AdvertisingIdClient.getAdvertisingIdInfo(context);
+            if (adInfo != null) {
+                info = new Info(adInfo.getId(), adInfo.isLimitAdTrackingEnabled(), System.currentTimeMillis());
+                cached = info;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Ad ID lookup failed: " + e.getMessage());
+            LOOKUP_FAILURES.incrementAndGet();
+            error = e;
+        }
+        LOOKUP_LATENCY.recordSince(start);
+        complete(info, error);
+    }
+
+    private void complete(Info info, Exception error) {
+        List<Callback> toNotify;
+        synchronized (lock) {
+            inFlight = false;
+            toNotify = waiters;
+            waiters = null;
+        }
+        if (toNotify == null) {
+            return;
+        }
+        // A failed refresh still has the previous value to fall back on
+        Info result = info != null ? info : cached;
+        for (Callback callback : toNotify) {
+            callback.onResult(result, result != null ? null : error);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the sampling interval from device state and link quality.
+ *
+ * Each condition scales the base interval: expensive or weak links (2G,
+ * roaming, weak Wi-Fi, low bandwidth) and a low battery, power save or a
+ * screen that is off stretch it; unmetered Wi-Fi or 5G shrinks it. The result
+ * is clamped to the configured bounds and kept together with the reasons, so
+ * the current rate can be explained when debugging.
+ */
+final class AdaptiveRate {
+    private static final int WEAK_WIFI_RSSI = -80;
+    private static final int LOW_BANDWIDTH_KBPS = 150;
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    static final class Decision {
+        final long intervalMs;
+        final double factor;
+        final String reason;
+
+        Decision(long intervalMs, double factor, String reason) {
+            this.intervalMs = intervalMs;
+            this.factor = factor;
+            this.reason = reason;
+        }
+    }
+
+    private final Context context;
+
+    AdaptiveRate(Context context) {
+        this.context = context;
+    }
+
+    Decision decide(long baseMs, long minMs, long maxMs, Map<String, Object> network) {
+        List<String> reasons = new ArrayList<>();
+        double factor = 1.0;
+
+        boolean connected = !Boolean.FALSE.equals(network.get("isConnected"));
+        boolean wifi = Boolean.TRUE.equals(network.get("hasWifi"));
+        boolean cellular = Boolean.TRUE.equals(network.get("hasCellular"));
+        boolean metered = !Boolean.FALSE.equals(network.get("isMetered"));
+        boolean roaming = Boolean.TRUE.equals(network.get("isNetworkRoaming")) || Boolean.TRUE.equals(network.get("isRoaming"));
+        Object networkClass = network.get("networkClass");
+        int rssi = intValue(network.get("rssi"), 0);
+        int downKbps = intValue(network.get("downstreamBandwidth"), -1);
+
+        if (!connected) {
+            factor *= 4;
+            reasons.add("offline");
+        } else {
+            if (roaming) {
+                factor *= 4;
+                reasons.add("roaming");
+            } else if (cellular && "2G".equals(networkClass)) {
+                factor *= 4;
+                reasons.add("2G");
+            }
+            if (wifi && rssi != 0 && rssi < WEAK_WIFI_RSSI) {
+                factor *= 2;
+                reasons.add("weak Wi-Fi (" + rssi + " dBm)");
+            }
+            if (downKbps >= 0 && downKbps < LOW_BANDWIDTH_KBPS) {
+                factor *= 2;
+                reasons.add("low bandwidth (" + downKbps + " kbps)");
+            }
+            if (!metered && !roaming && (wifi && rssi >= WEAK_WIFI_RSSI || "5G".equals(networkClass))) {
+                factor *= 0.5;
+                reasons.add(wifi ? "unmetered Wi-Fi" : "unmetered 5G");
+            }
+        }
+
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery != null) {
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+            boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+            int percent = level >= 0 && scale > 0 ? level * 100 / scale : 100;
+            if (!charging && percent <= LOW_BATTERY_PERCENT) {
+                factor *= 4;
+                reasons.add("low battery (" + percent + "%)");
+            }
+        }
+
+        PowerManager power = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (power != null) {
+            if (power.isPowerSaveMode()) {
+                factor *= 2;
+                reasons.add("power save");
+            }
+            if (!power.isInteractive()) {
+                factor *= 2;
+                reasons.add("screen off");
+            }
+        }
+
+        long interval = Math.max(minMs, Math.min(maxMs, (long) (baseMs * factor)));
+        String reason = reasons.isEmpty() ? "default" : join(reasons);
+        if (interval == minMs && baseMs * factor < minMs) {
+            reason += ", at minimum";
+        } else if (interval == maxMs && baseMs * factor > maxMs) {
+            reason += ", at maximum";
+        }
+        return new Decision(interval, factor, reason);
+    }
+
+    private static int intValue(Object value, int fallback) {
+        return value instanceof Number ? ((Number) value).intValue() : fallback;
+    }
+
+    private static String join(List<String> parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+}
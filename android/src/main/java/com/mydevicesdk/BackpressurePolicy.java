@@ -0,0 +1,15 @@
+package com.mydevicesdk;
+
+/**
+ * What {@link MySdk#sendData} does when the in-memory dispatch queue is full.
+ */
+public enum BackpressurePolicy {
+    // Evict the oldest queued event to make room for the new one
+    DROP_OLDEST,
+    // Reject the new event
+    DROP_NEWEST,
+    // Wait for the uploader to make room, up to the configured block timeout
+    BLOCK,
+    // Keep only the latest overflowing event until the uploader catches up
+    COALESCE
+}
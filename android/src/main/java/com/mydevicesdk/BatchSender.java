@@ -0,0 +1,37 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+
+import java.util.List;
+
+/**
+ * Sends one batch of serialized events, the uploader's only way off the
+ * device.
+ *
+ * {@link EventUploader} takes it as a constructor argument, so the whole
+ * send path (dispatch queue, disk queue, batching, retries) can be driven
+ * against a local stand-in on a plain JVM. {@link Http} is the one used by
+ * the SDK.
+ */
+interface BatchSender {
+    HttpTransport.PostResult send(List<byte[]> records) throws Exception;
+
+    /** POST /events with the current API token; a rejected token is dropped so the next send fetches a new one. */
+    final class Http implements BatchSender {
+        private final Context context;
+
+        Http(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @Override
+        public HttpTransport.PostResult send(List<byte[]> records) throws Exception {
+            String token = MySdk.ensureToken(context);
+            HttpTransport.PostResult result = HttpTransport.postEvents(MySdk.getBaseUrl(), token, records);
+            if (RetryPolicy.classify(result.code) == RetryPolicy.Outcome.UNAUTHORIZED) {
+                MySdk.getTokenManager(context).invalidate(token);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package com.mydevicesdk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes an event batch in the compact "binary-v1" wire format.
+ *
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ *   "MYB1"                      magic
+ *   dictionary count, then each entry as length + UTF-8 bytes
+ *   token as length + UTF-8 bytes
+ *   event count, then each event as a value
+ *
+ * A value is a one byte tag followed by its body:
+ *   0 null, 1 false, 2 true,
+ *   3 integer (zigzag varint), 4 double (8 bytes, big endian),
+ *   5 inline string (length + UTF-8), 6 dictionary string (index),
+ *   7 object (field count, then dictionary key index + value per field),
+ *   8 array (element count, then values)
+ *
+ * Every object key is stored once in the dictionary; short string values
+ * are added too when they repeat within the batch (carrier names, network
+ * types and so on).
+ *
+ * The queued JSON records are tokenized straight from their UTF-8 bytes
+ * into parallel token arrays, once; no String per record and no JSON tree.
+ * Keys and short strings go through a symbol table keyed by their bytes, so
+ * a string seen before costs no allocation, and long strings without
+ * escapes are copied from the record bytes as they are.
+ */
+final class BinaryBatchEncoder {
+    static final String FORMAT = "binary-v1";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final byte[] MAGIC = {'M', 'Y', 'B', '1'};
+    private static final int MAX_DICT_VALUE_LENGTH = 64;
+    private static final int MAX_DEPTH = 64;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_STRING = 5;
+    private static final byte TAG_DICT_STRING = 6;
+    private static final byte TAG_OBJECT = 7;
+    private static final byte TAG_ARRAY = 8;
+    // Token kinds that are not wire tags: a key or short string (symbol id), a long string
+    private static final byte TOKEN_KEY = 9;
+    private static final byte TOKEN_SYMBOL = 10;
+    private static final byte TOKEN_LONG_STRING = 11;
+
+    // Tokens, row t of each array: the kind and its number (integer, double bits, field or
+    // element count, symbol id, long string id)
+    private byte[] kinds;
+    private long[] numbers;
+    private int tokens;
+
+    // Long strings: the record bytes they are in (or their unescaped bytes), offset and length
+    private byte[][] longSources = new byte[16][];
+    private int[] longOffsets = new int[16];
+    private int[] longLengths = new int[16];
+    private int longStrings;
+
+    // Symbol table: open addressing over UTF-8 bytes, slots hold symbol id + 1
+    private int[] slots = new int[256];
+    private byte[][] symbolBytes = new byte[128][];
+    private int[] symbolHashes = new int[128];
+    private int[] symbolCounts = new int[128];
+    private int[] symbolIndex = new int[128];
+    private int symbols;
+    private int dictionarySize;
+    private int[] dictionary = new int[128];
+
+    // The encoded body, handed to the stream in one write
+    private byte[] buf;
+    private int len;
+
+    // Record being tokenized
+    private byte[] in;
+    private int pos;
+
+    // Sized from the batch: event records have about one token per 10 bytes and encode to a fifth
+    private BinaryBatchEncoder(int jsonBytes) {
+        int capacity = Math.max(64, jsonBytes / 8);
+        kinds = new byte[capacity];
+        numbers = new long[capacity];
+        buf = new byte[Math.max(256, jsonBytes / 4)];
+    }
+
+    // Records are the JSON event payloads as stored in the EventQueue
+    static void encode(String token, List<byte[]> records, OutputStream out) throws IOException {
+        int jsonBytes = 0;
+        for (int i = 0; i < records.size(); i++) {
+            jsonBytes += records.get(i).length;
+        }
+        BinaryBatchEncoder encoder = new BinaryBatchEncoder(jsonBytes);
+        for (int i = 0; i < records.size(); i++) {
+            encoder.tokenize(records.get(i));
+        }
+        encoder.write(token, records.size());
+        out.write(encoder.buf, 0, encoder.len);
+    }
+
+    private void write(String token, int events) {
+        for (int id = 0; id < symbols; id++) {
+            if (symbolIndex[id] < 0 && symbolCounts[id] > 1) {
+                intern(id);
+            }
+        }
+
+        writeBytes(MAGIC, 0, MAGIC.length);
+        writeVarint(dictionarySize);
+        for (int i = 0; i < dictionarySize; i++) {
+            writeString(symbolBytes[dictionary[i]]);
+        }
+        writeString(token.getBytes(UTF_8));
+        writeVarint(events);
+        for (int t = 0; t < tokens; t++) {
+            byte kind = kinds[t];
+            switch (kind) {
+                case TAG_INT:
+                    writeByte(TAG_INT);
+                    writeVarint((numbers[t] << 1) ^ (numbers[t] >> 63));
+                    break;
+                case TAG_DOUBLE:
+                    writeByte(TAG_DOUBLE);
+                    ensure(8);
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        buf[len++] = (byte) (numbers[t] >>> shift);
+                    }
+                    break;
+                case TAG_OBJECT:
+                case TAG_ARRAY:
+                    writeByte(kind);
+                    writeVarint(numbers[t]);
+                    break;
+                case TOKEN_KEY:
+                    writeVarint(symbolIndex[(int) numbers[t]]);
+                    break;
+                case TOKEN_SYMBOL: {
+                    int id = (int) numbers[t];
+                    if (symbolIndex[id] >= 0) {
+                        writeByte(TAG_DICT_STRING);
+                        writeVarint(symbolIndex[id]);
+                    } else {
+                        writeByte(TAG_STRING);
+                        writeString(symbolBytes[id]);
+                    }
+                    break;
+                }
+                case TOKEN_LONG_STRING: {
+                    int id = (int) numbers[t];
+                    writeByte(TAG_STRING);
+                    writeVarint(longLengths[id]);
+                    writeBytes(longSources[id], longOffsets[id], longLengths[id]);
+                    break;
+                }
+                default:
+                    writeByte(kind);
+                    break;
+            }
+        }
+    }
+
+    // Tokenizer: one record, one JSON value
+
+    private void tokenize(byte[] record) throws IOException {
+        in = record;
+        pos = 0;
+        value(0);
+        skipWhitespace();
+        if (pos != in.length) {
+            throw malformed();
+        }
+        in = null;
+    }
+
+    private void value(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw malformed();
+        }
+        skipWhitespace();
+        if (pos >= in.length) {
+            throw malformed();
+        }
+        switch (in[pos]) {
+            case '{':
+                object(depth);
+                break;
+            case '[':
+                array(depth);
+                break;
+            case '"':
+                string(false);
+                break;
+            case 't':
+                literal("true", TAG_TRUE);
+                break;
+            case 'f':
+                literal("false", TAG_FALSE);
+                break;
+            case 'n':
+                literal("null", TAG_NULL);
+                break;
+            default:
+                number();
+                break;
+        }
+    }
+
+    private void object(int depth) throws IOException {
+        int header = add(TAG_OBJECT, 0);
+        pos++;
+        long fields = 0;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw malformed();
+            }
+            string(true);
+            skipWhitespace();
+            if (peek() != ':') {
+                throw malformed();
+            }
+            pos++;
+            value(depth + 1);
+            fields++;
+            skipWhitespace();
+            byte c = peek();
+            pos++;
+            if (c == '}') {
+                numbers[header] = fields;
+                return;
+            }
+            if (c != ',') {
+                throw malformed();
+            }
+        }
+    }
+
+    private void array(int depth) throws IOException {
+        int header = add(TAG_ARRAY, 0);
+        pos++;
+        long elements = 0;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        while (true) {
+            value(depth + 1);
+            elements++;
+            skipWhitespace();
+            byte c = peek();
+            pos++;
+            if (c == ']') {
+                numbers[header] = elements;
+                return;
+            }
+            if (c != ',') {
+                throw malformed();
+            }
+        }
+    }
+
+    // Keys always become symbols (they all go in the dictionary), values only when short
+    private void string(boolean key) throws IOException {
+        int start = ++pos;
+        boolean escaped = false;
+        while (true) {
+            if (pos >= in.length) {
+                throw malformed();
+            }
+            byte c = in[pos];
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\') {
+                escaped = true;
+                pos++;
+            }
+            pos++;
+        }
+        int end = pos++;
+
+        if (!escaped) {
+            int length = end - start;
+            if (key || length <= MAX_DICT_VALUE_LENGTH) {
+                addSymbol(key, symbol(in, start, length));
+            } else {
+                addLongString(in, start, length);
+            }
+            return;
+        }
+        byte[] decoded = unescape(start, end).getBytes(UTF_8);
+        if (key || decoded.length <= MAX_DICT_VALUE_LENGTH) {
+            addSymbol(key, symbol(decoded, 0, decoded.length));
+        } else {
+            addLongString(decoded, 0, decoded.length);
+        }
+    }
+
+    private void addSymbol(boolean key, int id) {
+        if (key) {
+            if (symbolIndex[id] < 0) {
+                intern(id);
+            }
+            add(TOKEN_KEY, id);
+        } else {
+            symbolCounts[id]++;
+            add(TOKEN_SYMBOL, id);
+        }
+    }
+
+    private String unescape(int start, int end) throws IOException {
+        StringBuilder sb = new StringBuilder(end - start);
+        int run = start;
+        for (int i = start; i < end; i++) {
+            if (in[i] != '\\') {
+                continue;
+            }
+            sb.append(new String(in, run, i - run, UTF_8));
+            if (++i >= end) {
+                throw malformed();
+            }
+            switch (in[i]) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append((char) in[i]);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 >= end) {
+                        throw malformed();
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(new String(in, i + 1, 4, ISO_8859_1), 16));
+                    } catch (NumberFormatException e) {
+                        throw malformed();
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw malformed();
+            }
+            run = i + 1;
+        }
+        sb.append(new String(in, run, end - run, UTF_8));
+        return sb.toString();
+    }
+
+    private void literal(String word, byte tag) throws IOException {
+        if (pos + word.length() > in.length) {
+            throw malformed();
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (in[pos + i] != word.charAt(i)) {
+                throw malformed();
+            }
+        }
+        pos += word.length();
+        add(tag, 0);
+    }
+
+    // Integers that fit in a long are sent as integers, anything else as a double
+    private void number() throws IOException {
+        int start = pos;
+        boolean integral = true;
+        while (pos < in.length) {
+            byte c = in[pos];
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+            } else if ((c < '0' || c > '9') && c != '-' && c != '+') {
+                break;
+            }
+            pos++;
+        }
+        int length = pos - start;
+        if (length == 0) {
+            throw malformed();
+        }
+        if (integral) {
+            boolean negative = in[start] == '-';
+            int digits = negative ? length - 1 : length;
+            if (digits > 0 && digits <= 18) {
+                long n = 0;
+                for (int i = negative ? start + 1 : start; i < pos; i++) {
+                    int d = in[i] - '0';
+                    if (d < 0 || d > 9) {
+                        throw malformed();
+                    }
+                    n = n * 10 + d;
+                }
+                add(TAG_INT, negative ? -n : n);
+                return;
+            }
+        }
+        String text = new String(in, start, length, ISO_8859_1);
+        try {
+            if (integral) {
+                add(TAG_INT, Long.parseLong(text));
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Too large for a long
+        }
+        try {
+            add(TAG_DOUBLE, Double.doubleToLongBits(Double.parseDouble(text)));
+        } catch (NumberFormatException e) {
+            throw malformed();
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < in.length) {
+            byte c = in[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() throws IOException {
+        if (pos >= in.length) {
+            throw malformed();
+        }
+        return in[pos];
+    }
+
+    private IOException malformed() {
+        return new IOException("Malformed JSON record at byte " + pos);
+    }
+
+    private int add(byte kind, long number) {
+        if (tokens == kinds.length) {
+            int capacity = tokens * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+        }
+        kinds[tokens] = kind;
+        numbers[tokens] = number;
+        return tokens++;
+    }
+
+    private void addLongString(byte[] source, int offset, int length) {
+        if (longStrings == longSources.length) {
+            int capacity = longStrings * 2;
+            longSources = Arrays.copyOf(longSources, capacity);
+            longOffsets = Arrays.copyOf(longOffsets, capacity);
+            longLengths = Arrays.copyOf(longLengths, capacity);
+        }
+        longSources[longStrings] = source;
+        longOffsets[longStrings] = offset;
+        longLengths[longStrings] = length;
+        add(TOKEN_LONG_STRING, longStrings++);
+    }
+
+    // Symbol table
+
+    // Id of the string with these UTF-8 bytes, added on first sight
+    private int symbol(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                break;
+            }
+            if (symbolHashes[id] == hash && equal(symbolBytes[id], bytes, offset, length)) {
+                return id;
+            }
+        }
+
+        if (symbols == symbolBytes.length) {
+            int capacity = symbols * 2;
+            symbolBytes = Arrays.copyOf(symbolBytes, capacity);
+            symbolHashes = Arrays.copyOf(symbolHashes, capacity);
+            symbolCounts = Arrays.copyOf(symbolCounts, capacity);
+            symbolIndex = Arrays.copyOf(symbolIndex, capacity);
+        }
+        int id = symbols++;
+        symbolBytes[id] = Arrays.copyOfRange(bytes, offset, offset + length);
+        symbolHashes[id] = hash;
+        symbolIndex[id] = -1;
+        if (symbols * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insert(id);
+        }
+        return id;
+    }
+
+    private void insert(int id) {
+        int mask = slots.length - 1;
+        int slot = symbolHashes[id] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 0; id < symbols; id++) {
+            insert(id);
+        }
+    }
+
+    private void intern(int id) {
+        if (dictionarySize == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        }
+        symbolIndex[id] = dictionarySize;
+        dictionary[dictionarySize++] = id;
+    }
+
+    private static boolean equal(byte[] a, byte[] b, int offset, int length) {
+        if (a.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Output
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+
+    private void writeByte(byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buf, len, length);
+        len += length;
+    }
+
+    private void writeString(byte[] utf8) {
+        writeVarint(utf8.length);
+        writeBytes(utf8, 0, utf8.length);
+    }
+
+    private void writeVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[len++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[len++] = (byte) value;
+    }
+}
@@ -0,0 +1,389 @@
+package com.mydevicesdk;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.telephony.CellIdentityGsm;
+import android.telephony.CellIdentityLte;
+import android.telephony.CellIdentityNr;
+import android.telephony.CellIdentityWcdma;
+import android.telephony.CellInfo;
+import android.telephony.CellInfoGsm;
+import android.telephony.CellInfoLte;
+import android.telephony.CellInfoNr;
+import android.telephony.CellInfoWcdma;
+import android.telephony.CellSignalStrength;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serving and neighbour cells, scanned no more often than allowed.
+ *
+ * A scan wakes the modem, so requests within minIntervalMs of the last scan
+ * get the cached snapshot, and requests during a scan join it. Scans use
+ * requestCellInfoUpdate on API 29+ and getAllCellInfo before that, bounded
+ * by a timeout. Cells are held in parallel primitive arrays. A cell counts
+ * as changed when it is new, changes registration, or its signal moves by
+ * at least {@link #DBM_HYSTERESIS} dB; otherwise it keeps its previous
+ * signal value. Payloads carry only the changed cells plus the serving cell
+ * ({@link Snapshot#toMap(boolean)}), or all cells when delta encoding
+ * already drops the unchanged ones. Needs ACCESS_FINE_LOCATION; without it
+ * snapshots are empty.
+ */
+final class CellInfoCollector {
+    private static final String TAG = "MySdk";
+    private static final int MAX_CELLS = 32;
+    private static final int DBM_HYSTERESIS = 6;
+    private static final long SCAN_TIMEOUT_MS = 5000;
+    private static final long MIN_ALLOWED_INTERVAL_MS = 10000;
+    private static final int UNAVAILABLE = Integer.MAX_VALUE;
+    private static final LatencyHistogram SCAN_LATENCY = SdkMetrics.histogram("cells.scan");
+    private static final AtomicLong CACHE_HITS = SdkMetrics.counter("cells.cacheHits");
+
+    static final byte GSM = 1;
+    static final byte WCDMA = 2;
+    static final byte LTE = 3;
+    static final byte NR = 4;
+    private static final String[] TYPE_NAMES = {"", "gsm", "wcdma", "lte", "nr"};
+
+    interface Callback {
+        void onCells(Snapshot snapshot);
+    }
+
+    /** One scan: row i of every array describes cell i, registered (serving) cells first. */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, 0);
+
+        // Wall-clock time, for reporting only; the scan interval is enforced on elapsedRealtime
+        final long scannedAt;
+        final int size;
+        final byte[] type;
+        final int[] mcc;
+        final int[] mnc;
+        // LAC or TAC
+        final int[] area;
+        final long[] cid;
+        // ARFCN, UARFCN, EARFCN or NR-ARFCN
+        final int[] channel;
+        // PSC or PCI
+        final int[] pci;
+        final int[] dbm;
+        final boolean[] registered;
+        final boolean[] changed;
+
+        Snapshot(long scannedAt, int capacity) {
+            this.scannedAt = scannedAt;
+            this.size = 0;
+            this.type = new byte[capacity];
+            this.mcc = new int[capacity];
+            this.mnc = new int[capacity];
+            this.area = new int[capacity];
+            this.cid = new long[capacity];
+            this.channel = new int[capacity];
+            this.pci = new int[capacity];
+            this.dbm = new int[capacity];
+            this.registered = new boolean[capacity];
+            this.changed = new boolean[capacity];
+        }
+
+        private Snapshot(Snapshot from, int size) {
+            this.scannedAt = from.scannedAt;
+            this.size = size;
+            this.type = Arrays.copyOf(from.type, size);
+            this.mcc = Arrays.copyOf(from.mcc, size);
+            this.mnc = Arrays.copyOf(from.mnc, size);
+            this.area = Arrays.copyOf(from.area, size);
+            this.cid = Arrays.copyOf(from.cid, size);
+            this.channel = Arrays.copyOf(from.channel, size);
+            this.pci = Arrays.copyOf(from.pci, size);
+            this.dbm = Arrays.copyOf(from.dbm, size);
+            this.registered = Arrays.copyOf(from.registered, size);
+            this.changed = Arrays.copyOf(from.changed, size);
+        }
+
+        int changedCount() {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (changed[i]) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        // Stable identity: the global cell ID when known, else channel and PCI (neighbours often lack the ID)
+        String key(int i) {
+            StringBuilder sb = new StringBuilder(TYPE_NAMES[type[i]]).append(':');
+            if (cid[i] != UNAVAILABLE && cid[i] != Long.MAX_VALUE) {
+                sb.append(mcc[i]).append('-').append(mnc[i]).append('-').append(area[i]).append('-').append(cid[i]);
+            } else {
+                sb.append("ch").append(channel[i]).append("-pci").append(pci[i]);
+            }
+            return sb.toString();
+        }
+
+        private int indexOf(String key) {
+            for (int i = 0; i < size; i++) {
+                if (key(i).equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // {"serving": key, "count": cells scanned, "cells": {key: [dbm, registered, channel, pci]}}.
+        // With changedOnly, cells that did not change since the previous scan are left out, except
+        // the serving cell; keyed by cell so a delta of the full map also carries only changed cells.
+        Map<String, Object> toMap(boolean changedOnly) {
+            Map<String, Object> cells = new LinkedHashMap<>();
+            String serving = null;
+            for (int i = 0; i < size; i++) {
+                String key = key(i);
+                boolean isServing = registered[i] && serving == null;
+                if (isServing) {
+                    serving = key;
+                }
+                if (changedOnly && !changed[i] && !isServing) {
+                    continue;
+                }
+                cells.put(key, Arrays.asList(
+                        dbm[i] != UNAVAILABLE ? dbm[i] : null,
+                        registered[i] ? 1 : 0,
+                        channel[i] != UNAVAILABLE ? channel[i] : null,
+                        pci[i] != UNAVAILABLE ? pci[i] : null));
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("serving", serving);
+            map.put("count", size);
+            map.put("cells", cells);
+            return map;
+        }
+    }
+
+    private static volatile CellInfoCollector instance;
+
+    private final Context context;
+    private final TelephonyManager telephony;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "MySdk-cells");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long minIntervalMs = 60 * 1000;
+
+    // Guarded by this
+    private Snapshot last = Snapshot.EMPTY;
+    // elapsedRealtime, so a wall-clock change can't allow an early scan; 0 before the first scan
+    private long lastScanStarted;
+    private List<Callback> waiting;
+    private long scanId;
+
+    static CellInfoCollector get(Context context) {
+        CellInfoCollector current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (CellInfoCollector.class) {
+            if (instance == null) {
+                instance = new CellInfoCollector(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    private CellInfoCollector(Context context) {
+        this.context = context;
+        this.telephony = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+    }
+
+    void setMinIntervalMs(long intervalMs) {
+        this.minIntervalMs = Math.max(MIN_ALLOWED_INTERVAL_MS, intervalMs);
+    }
+
+    // The cached snapshot if it is recent enough, otherwise the result of a (possibly shared) scan
+    void request(Callback callback) {
+        Snapshot cached;
+        long id;
+        synchronized (this) {
+            if (waiting != null) {
+                waiting.add(callback);
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (telephony == null || !hasPermission() || lastScanStarted != 0 && now - lastScanStarted < minIntervalMs) {
+                cached = last;
+                id = -1;
+            } else {
+                lastScanStarted = Math.max(1, now);
+                waiting = new ArrayList<>(2);
+                waiting.add(callback);
+                cached = null;
+                id = ++scanId;
+            }
+        }
+        if (cached != null) {
+            CACHE_HITS.incrementAndGet();
+            callback.onCells(cached);
+            return;
+        }
+        scan(id);
+    }
+
+    @SuppressLint("MissingPermission")
+    private void scan(long id) {
+        long start = SCAN_LATENCY.start(id);
+        executor.schedule(() -> complete(id, null, start), SCAN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                telephony.requestCellInfoUpdate(executor, new TelephonyManager.CellInfoCallback() {
+                    @Override
+                    public void onCellInfo(List<CellInfo> cells) {
+                        complete(id, cells, start);
+                    }
+
+                    @Override
+                    public void onError(int errorCode, Throwable detail) {
+                        Log.w(TAG, "⚠️ Cell info update failed (" + errorCode + "), using last known cells");
+                        executor.execute(() -> complete(id, telephony.getAllCellInfo(), start));
+                    }
+                });
+            } else {
+                executor.execute(() -> complete(id, telephony.getAllCellInfo(), start));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Cell info scan failed: ", e);
+            complete(id, null, start);
+        }
+    }
+
+    // Finish scan id exactly once; null cells (timeout or error) keep the last snapshot
+    private void complete(long id, List<CellInfo> cells, long startNanos) {
+        List<Callback> callbacks;
+        Snapshot result;
+        synchronized (this) {
+            if (id != scanId || waiting == null) {
+                return;
+            }
+            if (cells != null) {
+                last = diff(read(cells), last);
+            }
+            result = last;
+            callbacks = waiting;
+            waiting = null;
+        }
+        SCAN_LATENCY.recordSince(startNanos);
+        for (Callback callback : callbacks) {
+            callback.onCells(result);
+        }
+    }
+
+    private boolean hasPermission() {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private static Snapshot read(List<CellInfo> cells) {
+        Snapshot s = new Snapshot(System.currentTimeMillis(), MAX_CELLS);
+        int n = 0;
+        // Two passes so registered cells come first
+        for (int pass = 0; pass < 2; pass++) {
+            for (CellInfo cell : cells) {
+                if (n == MAX_CELLS || cell.isRegistered() != (pass == 0)) {
+                    continue;
+                }
+                if (readCell(cell, s, n)) {
+                    s.registered[n] = cell.isRegistered();
+                    n++;
+                }
+            }
+        }
+        return new Snapshot(s, n);
+    }
+
+    // Channel numbers (EARFCN, UARFCN, ARFCN) need API 24; older devices report them as unavailable
+    private static boolean readCell(CellInfo cell, Snapshot s, int i) {
+        CellSignalStrength signal;
+        if (cell instanceof CellInfoLte) {
+            CellIdentityLte id = ((CellInfoLte) cell).getCellIdentity();
+            s.type[i] = LTE;
+            s.mcc[i] = id.getMcc();
+            s.mnc[i] = id.getMnc();
+            s.area[i] = id.getTac();
+            s.cid[i] = id.getCi();
+            s.channel[i] = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? id.getEarfcn() : UNAVAILABLE;
+            s.pci[i] = id.getPci();
+            signal = ((CellInfoLte) cell).getCellSignalStrength();
+        } else if (cell instanceof CellInfoWcdma) {
+            CellIdentityWcdma id = ((CellInfoWcdma) cell).getCellIdentity();
+            s.type[i] = WCDMA;
+            s.mcc[i] = id.getMcc();
+            s.mnc[i] = id.getMnc();
+            s.area[i] = id.getLac();
+            s.cid[i] = id.getCid();
+            s.channel[i] = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? id.getUarfcn() : UNAVAILABLE;
+            s.pci[i] = id.getPsc();
+            signal = ((CellInfoWcdma) cell).getCellSignalStrength();
+        } else if (cell instanceof CellInfoGsm) {
+            CellIdentityGsm id = ((CellInfoGsm) cell).getCellIdentity();
+            s.type[i] = GSM;
+            s.mcc[i] = id.getMcc();
+            s.mnc[i] = id.getMnc();
+            s.area[i] = id.getLac();
+            s.cid[i] = id.getCid();
+            s.channel[i] = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? id.getArfcn() : UNAVAILABLE;
+            s.pci[i] = UNAVAILABLE;
+            signal = ((CellInfoGsm) cell).getCellSignalStrength();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && cell instanceof CellInfoNr) {
+            CellIdentityNr id = (CellIdentityNr) ((CellInfoNr) cell).getCellIdentity();
+            s.type[i] = NR;
+            s.mcc[i] = parse(id.getMccString());
+            s.mnc[i] = parse(id.getMncString());
+            s.area[i] = id.getTac();
+            s.cid[i] = id.getNci();
+            s.channel[i] = id.getNrarfcn();
+            s.pci[i] = id.getPci();
+            signal = ((CellInfoNr) cell).getCellSignalStrength();
+        } else {
+            // CDMA and anything newer are not reported
+            return false;
+        }
+        s.dbm[i] = signal != null ? signal.getDbm() : UNAVAILABLE;
+        return true;
+    }
+
+    private static int parse(String digits) {
+        try {
+            return digits != null ? Integer.parseInt(digits) : UNAVAILABLE;
+        } catch (NumberFormatException e) {
+            return UNAVAILABLE;
+        }
+    }
+
+    // Mark what changed against the previous snapshot; small signal moves keep the previous value
+    private static Snapshot diff(Snapshot current, Snapshot previous) {
+        for (int i = 0; i < current.size; i++) {
+            int j = previous.indexOf(current.key(i));
+            if (j < 0 || previous.registered[j] != current.registered[i]
+                    || Math.abs((long) current.dbm[i] - previous.dbm[j]) >= DBM_HYSTERESIS) {
+                current.changed[i] = true;
+            } else {
+                current.dbm[i] = previous.dbm[j];
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,395 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.location.Location;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Native replacement for the JS auto-send loop.
+ *
+ * JS configures it once with the static device fields and contact data; from
+ * then on this engine samples network, location and ad ID on its own thread,
+ * writes the payload with {@link JsonStreamWriter} and hands it to the
+ * uploader. Nothing crosses the bridge per tick, and sampling continues while
+ * the JS runtime is paused or the app is in the background. The interval
+ * adapts to the link and battery via {@link AdaptiveRate}.
+ */
+final class CollectionEngine {
+    private static final String TAG = "MySdk";
+    private static final long MIN_INTERVAL_MS = 10000;
+    private static final long SAMPLE_TIMEOUT_MS = 5000;
+    private static final long PUBLIC_IP_TTL_MS = 30 * 60 * 1000;
+    private static final String PUBLIC_IP_URL = "https://api.ipify.org?format=json";
+    private static final LatencyHistogram TICK_LATENCY = SdkMetrics.histogram("collection.tick");
+    private static final AtomicLong SAMPLES = SdkMetrics.counter("collection.samples");
+    private static final AtomicLong UNCHANGED = SdkMetrics.counter("collection.unchanged");
+    private static final AtomicLong FAILURES = SdkMetrics.counter("collection.failures");
+
+    static final class Config {
+        long intervalMs = 3 * 60 * 1000;
+        boolean collectLocation = true;
+        // Serving and neighbour cells, rescanned at most every cellIntervalMs (needs fine location);
+        // 0 keeps the collector's own limit
+        boolean collectCells = true;
+        long cellIntervalMs;
+        // Nearby access points from cached Wi-Fi scans, see WifiScanCollector (needs fine location)
+        boolean collectWifiScan = false;
+        // Fields sent with every event (deviceId, brand, model, ...) and the contact object
+        Map<String, Object> device = Collections.emptyMap();
+        Map<String, Object> contact = Collections.emptyMap();
+        // Send only what changed since the last uploaded sample, with a full keyframe every N samples.
+        // Off unless the backend is known to rebuild snapshots from deltas
+        boolean deltaEncoding = false;
+        int keyframeEvery = 20;
+        // Scale the interval (and upload interval) with link quality and battery, within
+        // [minIntervalMs, maxIntervalMs]; 0 means intervalMs / 4 and intervalMs * 8
+        boolean adaptive = true;
+        long minIntervalMs;
+        long maxIntervalMs;
+        // Manual samples requested within this window are folded into one
+        long foldWindowMs = 1000;
+    }
+
+    private static volatile CollectionEngine instance;
+
+    private final Context context;
+    private final ScheduledExecutorService scheduler;
+    private final SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    private ScheduledFuture<?> task;
+    private long generation;
+    private volatile Config config;
+    private final AdaptiveRate adaptiveRate;
+    private volatile AdaptiveRate.Decision rate;
+    // Only touched on the collect thread; replaced when the config changes
+    private SnapshotDelta delta;
+    private Config deltaConfig;
+
+    // Extras from sampleNow calls waiting for the next sample
+    private final Object extrasLock = new Object();
+    private final Map<String, Object> pendingExtras = new LinkedHashMap<>();
+    private boolean foldScheduled;
+
+    private final PublicIpCache publicIp = new PublicIpCache(PUBLIC_IP_URL, PUBLIC_IP_TTL_MS);
+
+    static CollectionEngine get(Context context) {
+        CollectionEngine current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (CollectionEngine.class) {
+            if (instance == null) {
+                instance = new CollectionEngine(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    private CollectionEngine(Context context) {
+        this.context = context;
+        this.isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        this.adaptiveRate = new AdaptiveRate(context);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MySdk-collect");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Start (or restart with a new config); the first sample is taken right away
+    synchronized void start(Config config) {
+        this.config = config;
+        if (task != null) {
+            task.cancel(false);
+        }
+        long runId = ++generation;
+        task = scheduler.schedule(() -> scheduledTick(runId), 0, TimeUnit.MILLISECONDS);
+        Log.i(TAG, "✅ Collection started, every " + baseInterval(config) + "ms"
+                + (config.adaptive ? " (adaptive)" : ""));
+    }
+
+    synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+            generation++;
+            rate = null;
+            try {
+                MySdk.getUploader(context).setFlushScale(1.0);
+            } catch (Exception e) {
+                Log.w(TAG, "⚠️ Could not reset upload interval: " + e.getMessage());
+            }
+            Log.i(TAG, "✅ Collection stopped");
+        }
+    }
+
+    synchronized boolean isRunning() {
+        return task != null;
+    }
+
+    // Last adaptive decision, null until the first sample or when adaptive sampling is off
+    AdaptiveRate.Decision currentRate() {
+        return rate;
+    }
+
+    Config currentConfig() {
+        return config;
+    }
+
+    private void scheduledTick(long runId) {
+        tick();
+        synchronized (this) {
+            // A stop or restart during the tick owns the schedule now
+            if (runId != generation) {
+                return;
+            }
+            Config current = config;
+            AdaptiveRate.Decision decision = rate;
+            long delay = current.adaptive && decision != null ? decision.intervalMs : baseInterval(current);
+            task = scheduler.schedule(() -> scheduledTick(runId), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static long baseInterval(Config config) {
+        return Math.max(MIN_INTERVAL_MS, config.intervalMs);
+    }
+
+    // Take one sample now, in addition to the schedule, with extra fields merged into its data.
+    // Calls within foldWindowMs fold into one sample carrying all their extras (later keys win);
+    // a scheduled tick in that window picks the extras up as well.
+    void sampleNow(Map<String, Object> extras) {
+        Config current = config;
+        long window = current != null ? current.foldWindowMs : 0;
+        synchronized (extrasLock) {
+            if (extras != null) {
+                pendingExtras.putAll(extras);
+            }
+            if (foldScheduled) {
+                return;
+            }
+            foldScheduled = true;
+        }
+        scheduler.schedule(this::tick, Math.max(0, window), TimeUnit.MILLISECONDS);
+    }
+
+    private Map<String, Object> takeExtras() {
+        synchronized (extrasLock) {
+            foldScheduled = false;
+            if (pendingExtras.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<String, Object> extras = new LinkedHashMap<>(pendingExtras);
+            pendingExtras.clear();
+            return extras;
+        }
+    }
+
+    private void tick() {
+        // Taken first so the fold flag is cleared even if this tick returns early or fails;
+        // sampleNow calls from here on schedule their own tick
+        Map<String, Object> extras = takeExtras();
+        Config current = config;
+        if (current == null || !MySdk.isInitialized()) {
+            return;
+        }
+        long start = TICK_LATENCY.start();
+        try {
+            // Location and ad ID resolve asynchronously; start them before the blocking network snapshot
+            AtomicReference<Location> location = new AtomicReference<>();
+            AtomicReference<AdIdProvider.Info> adInfo = new AtomicReference<>();
+            AtomicReference<CellInfoCollector.Snapshot> cells = new AtomicReference<>();
+            CountDownLatch pending = new CountDownLatch(3);
+            requestLocation(current, location, pending);
+            requestCells(current, cells, pending);
+            AdIdProvider.get(context).request((info, error) -> {
+                adInfo.set(info);
+                pending.countDown();
+            });
+
+            Map<String, Object> network = NetworkInfoCache.get(context).snapshot();
+            adapt(current, network);
+            String ip = publicIp.get(network);
+            pending.await(SAMPLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+            Map<String, Object> state = buildState(current, network, ip, location.get(), adInfo.get(), cells.get());
+            if (current.collectWifiScan) {
+                Map<String, Object> wifiScan = WifiScanCollector.get(context).snapshot(true);
+                if (wifiScan != null) {
+                    state.put("wifiScan", wifiScan);
+                }
+            }
+            state.putAll(extras);
+            // A manual sample right after a scheduled one (or the reverse) usually changes nothing
+            if (MySdk.getCoalescer().isDuplicate(state)) {
+                Log.i(TAG, "ℹ️ Sample unchanged, skipped");
+                UNCHANGED.incrementAndGet();
+                return;
+            }
+            EventUploader uploader = MySdk.getUploader(context);
+            SnapshotDelta encoder = deltaEncoder(current);
+            SnapshotDelta.Encoded delta = null;
+            if (encoder != null) {
+                encoder.acknowledge(uploader.settledEvents(), uploader.lostEvents());
+                delta = encoder.encode(state);
+            }
+            if (!uploader.enqueue(buildPayload(current, state, delta))) {
+                Log.w(TAG, "⚠️ Dispatch queue full, sample dropped");
+            } else {
+                SAMPLES.incrementAndGet();
+                if (encoder != null) {
+                    encoder.sent(delta, state, uploader.acceptedEvents());
+                }
+            }
+        } catch (Throwable t) {
+            Log.e(TAG, "❌ Collection tick failed: ", t);
+            FAILURES.incrementAndGet();
+        } finally {
+            TICK_LATENCY.recordSince(start);
+        }
+    }
+
+    private void adapt(Config current, Map<String, Object> network) throws Exception {
+        EventUploader uploader = MySdk.getUploader(context);
+        if (!current.adaptive) {
+            rate = null;
+            uploader.setFlushScale(1.0);
+            return;
+        }
+        long base = baseInterval(current);
+        long min = current.minIntervalMs > 0 ? Math.max(MIN_INTERVAL_MS, current.minIntervalMs) : Math.max(MIN_INTERVAL_MS, base / 4);
+        long max = current.maxIntervalMs > 0 ? Math.max(min, current.maxIntervalMs) : base * 8;
+        AdaptiveRate.Decision decision = adaptiveRate.decide(base, min, max, network);
+        AdaptiveRate.Decision previous = rate;
+        if (previous == null || previous.intervalMs != decision.intervalMs) {
+            Log.i(TAG, "✅ Sampling every " + decision.intervalMs + "ms: " + decision.reason);
+        }
+        rate = decision;
+        // Uploads follow the same scale, so a slow link also gets fewer, larger batches
+        uploader.setFlushScale((double) decision.intervalMs / base);
+    }
+
+    private SnapshotDelta deltaEncoder(Config current) {
+        if (!current.deltaEncoding) {
+            return null;
+        }
+        // A new config may carry a new deviceId or fields, so it starts with a keyframe
+        if (delta == null || deltaConfig != current) {
+            delta = new SnapshotDelta(current.keyframeEvery);
+            deltaConfig = current;
+        }
+        return delta;
+    }
+
+    private void requestLocation(Config current, AtomicReference<Location> out, CountDownLatch pending) {
+        if (!current.collectLocation || !LocationEngine.get(context).hasPermission()) {
+            pending.countDown();
+            return;
+        }
+        LocationEngine.get(context).request(new LocationEngine.Options(), new LocationEngine.Callback() {
+            @Override
+            public void onLocation(Location location) {
+                out.set(location);
+                pending.countDown();
+            }
+
+            @Override
+            public void onError(String code, String message, Exception e) {
+                pending.countDown();
+            }
+        });
+    }
+
+    private void requestCells(Config current, AtomicReference<CellInfoCollector.Snapshot> out, CountDownLatch pending) {
+        if (!current.collectCells) {
+            pending.countDown();
+            return;
+        }
+        CellInfoCollector collector = CellInfoCollector.get(context);
+        if (current.cellIntervalMs > 0) {
+            collector.setMinIntervalMs(current.cellIntervalMs);
+        }
+        collector.request(snapshot -> {
+            out.set(snapshot);
+            pending.countDown();
+        });
+    }
+
+    // The data section of the JS sendData payload
+    private Map<String, Object> buildState(Config current, Map<String, Object> network, String ip,
+                                           Location location, AdIdProvider.Info adInfo,
+                                           CellInfoCollector.Snapshot cells) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : current.device.entrySet()) {
+            if (!"deviceId".equals(entry.getKey())) {
+                data.put(entry.getKey(), entry.getValue());
+            }
+        }
+        data.put("adId", adInfo != null ? adInfo.id : null);
+        data.put("androidId", current.device.get("deviceId"));
+
+        Map<String, Object> networkInfo = new LinkedHashMap<>(network);
+        networkInfo.put("publicIp", ip);
+        data.put("network", Collections.<String, Object>singletonMap("android_network_info", networkInfo));
+
+        if (location != null) {
+            Map<String, Object> loc = new LinkedHashMap<>();
+            loc.put("latitude", location.getLatitude());
+            loc.put("longitude", location.getLongitude());
+            loc.put("accuracy", (double) location.getAccuracy());
+            loc.put("altitude", location.getAltitude());
+            loc.put("speed", (double) location.getSpeed());
+            loc.put("bearing", (double) location.getBearing());
+            loc.put("provider", location.getProvider());
+            data.put("location", loc);
+        } else {
+            data.put("location", null);
+        }
+        if (cells != null && cells.size > 0) {
+            // Delta encoding drops unchanged cells by itself
+            data.put("cellInfo", cells.toMap(!current.deltaEncoding));
+        }
+        data.put("timezone", TimeZone.getDefault().getID());
+        data.put("collectionErrors", Collections.emptyList());
+        data.putAll(current.contact);
+        return data;
+    }
+
+    // Same shape as the JS sendData payload, minus apiKey which goes on the batch.
+    // With delta encoding, data holds only what changed and a snapshot section says against what.
+    private byte[] buildPayload(Config current, Map<String, Object> data, SnapshotDelta.Encoded delta) throws Exception {
+        JsonStreamWriter w = JsonStreamWriter.local();
+        w.beginObject()
+                .name("deviceId").value(current.device.get("deviceId"))
+                .name("platform").value("android")
+                .name("timestamp").value(isoFormat.format(new Date()));
+        if (delta != null) {
+            w.name("snapshot").beginObject()
+                    .name("epoch").value(delta.epoch)
+                    .name("version").value(delta.version)
+                    .name("keyframe").value(delta.keyframe);
+            if (!delta.keyframe) {
+                w.name("baseVersion").value(delta.baseVersion)
+                        .name("removed").value(delta.removed);
+            }
+            w.endObject();
+            data = delta.changed;
+        }
+        w.name("data").value(data);
+        w.endObject();
+        return w.toByteArray();
+    }
+}
@@ -0,0 +1,238 @@
+package com.mydevicesdk;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue between the threads calling {@link MySdk#sendData}
+ * and the single uploader thread.
+ *
+ * Slots carry a sequence number (Vyukov's bounded queue), so producers claim
+ * a slot with one CAS and never take a lock. Only one thread may call
+ * {@link #drainTo} / {@link #awaitItems}.
+ */
+final class DispatchQueue<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private final AtomicLong dequeuePos = new AtomicLong();
+    private final AtomicReference<E> overflow = new AtomicReference<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Accepted elements later pushed out by DROP_OLDEST (also counted in dropped)
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private volatile BackpressurePolicy policy;
+    private volatile long blockTimeoutNanos;
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    DispatchQueue(int capacity, BackpressurePolicy policy, long blockTimeoutMs) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.policy = policy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+    }
+
+    void setPolicy(BackpressurePolicy policy, long blockTimeoutMs) {
+        this.policy = policy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    // Apply the backpressure policy; returns false when the element was dropped
+    boolean publish(E element) {
+        // While an element waits in the overflow slot it is the newest one, so later arrivals
+        // replace it instead of slipping into the ring ahead of it
+        boolean overflowing = policy == BackpressurePolicy.COALESCE && overflow.get() != null;
+        if (!overflowing && offer(element)) {
+            accepted.incrementAndGet();
+            wakeConsumer();
+            return true;
+        }
+
+        switch (policy) {
+            case DROP_OLDEST:
+                while (!offer(element)) {
+                    if (poll() != null) {
+                        dropped.incrementAndGet();
+                        evicted.incrementAndGet();
+                    }
+                }
+                accepted.incrementAndGet();
+                wakeConsumer();
+                return true;
+
+            case BLOCK:
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (!offer(element)) {
+                    wakeConsumer();
+                    if (System.nanoTime() >= deadline) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+                    LockSupport.parkNanos(50_000L);
+                }
+                accepted.incrementAndGet();
+                wakeConsumer();
+                return true;
+
+            case COALESCE:
+                if (overflow.getAndSet(element) != null) {
+                    coalesced.incrementAndGet();
+                }
+                accepted.incrementAndGet();
+                wakeConsumer();
+                return true;
+
+            case DROP_NEWEST:
+            default:
+                dropped.incrementAndGet();
+                return false;
+        }
+    }
+
+    // Consumer side: move up to max elements into the list in arrival order, returns how many were
+    // moved. The overflow element is only taken once the ring is empty.
+    int drainTo(List<E> out, int max) {
+        int n = 0;
+        E element;
+        while (n < max && (element = poll()) != null) {
+            out.add(element);
+            n++;
+        }
+        if (n < max) {
+            E pending = overflow.getAndSet(null);
+            if (pending != null) {
+                out.add(pending);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // Consumer side: park until an element arrives or the timeout elapses
+    void awaitItems(long timeoutNanos) {
+        consumer = Thread.currentThread();
+        consumerParked = true;
+        try {
+            if (isEmpty() && timeoutNanos > 0) {
+                LockSupport.parkNanos(this, timeoutNanos);
+            }
+        } finally {
+            consumerParked = false;
+        }
+    }
+
+    // Consumer side: park until an element arrives or the thread is unparked
+    void awaitItems() {
+        consumer = Thread.currentThread();
+        consumerParked = true;
+        try {
+            if (isEmpty()) {
+                LockSupport.park(this);
+            }
+        } finally {
+            consumerParked = false;
+        }
+    }
+
+    boolean isEmpty() {
+        return depth() == 0;
+    }
+
+    int depth() {
+        long size = enqueuePos.get() - dequeuePos.get();
+        return (int) Math.max(0, Math.min(size, capacity())) + (overflow.get() != null ? 1 : 0);
+    }
+
+    long acceptedCount() {
+        return accepted.get();
+    }
+
+    long droppedCount() {
+        return dropped.get();
+    }
+
+    long evictedCount() {
+        return evicted.get();
+    }
+
+    long coalescedCount() {
+        return coalesced.get();
+    }
+
+    private void wakeConsumer() {
+        if (consumerParked) {
+            Thread t = consumer;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    private boolean offer(E element) {
+        long pos = enqueuePos.get();
+        int index;
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = enqueuePos.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = enqueuePos.get();
+            }
+        }
+        buffer.lazySet(index, element);
+        sequences.lazySet(index, pos + 1);
+        return true;
+    }
+
+    // Producers only poll under DROP_OLDEST, so this stays safe with several callers
+    private E poll() {
+        long pos = dequeuePos.get();
+        int index;
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = dequeuePos.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = dequeuePos.get();
+            }
+        }
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, pos + mask + 1);
+        return element;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mydevicesdk;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drops events that repeat one sent moments ago.
+ *
+ * Each payload is reduced to a 64-bit FNV-1a hash of its canonical form:
+ * object keys in sorted order, timestamp fields skipped, numbers compared by
+ * value. The last {@link #SLOTS} hashes are kept with the time they were
+ * seen in two fixed arrays; a hash seen again within the window is a
+ * duplicate. The oldest slot is reused, so memory stays constant.
+ */
+final class EventCoalescer {
+    static final int SLOTS = 64;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final List<String> IGNORED_KEYS = Arrays.asList("timestamp", "time", "fetchedAt");
+
+    private final long[] hashes = new long[SLOTS];
+    private final long[] seenAt = new long[SLOTS];
+    private volatile long windowMs;
+    private long duplicates;
+
+    EventCoalescer(long windowMs) {
+        this.windowMs = windowMs;
+        Arrays.fill(seenAt, Long.MIN_VALUE);
+    }
+
+    void setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    synchronized long duplicateCount() {
+        return duplicates;
+    }
+
+    // True if an equal payload was seen within the window; otherwise remembers this one
+    boolean isDuplicate(Object payload) {
+        return windowMs > 0 && isDuplicateHash(hash(FNV_OFFSET, payload));
+    }
+
+    // Same, for a payload already reduced with hash(byte[], int, int)
+    boolean isDuplicateHash(long hash) {
+        long window = windowMs;
+        if (window <= 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            int oldest = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                if (seenAt[i] != Long.MIN_VALUE && hashes[i] == hash && now - seenAt[i] <= window) {
+                    duplicates++;
+                    return true;
+                }
+                if (seenAt[i] < seenAt[oldest]) {
+                    oldest = i;
+                }
+            }
+            hashes[oldest] = hash;
+            seenAt[oldest] = now;
+            return false;
+        }
+    }
+
+    // Hash of already-encoded bytes; equal only for byte-identical encodings
+    static long hash(byte[] bytes, int from, int to) {
+        long h = FNV_OFFSET;
+        for (int i = from; i < to; i++) {
+            h = mix(h, bytes[i] & 0xff);
+        }
+        return h;
+    }
+
+    private static long hash(long h, Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return mix(h, 'n');
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            String[] keys = new String[map.size()];
+            int i = 0;
+            for (Object key : map.keySet()) {
+                keys[i++] = String.valueOf(key);
+            }
+            Arrays.sort(keys);
+            h = mix(h, '{');
+            for (String key : keys) {
+                if (!IGNORED_KEYS.contains(key)) {
+                    h = hash(mix(string(h, key), ':'), map.get(key));
+                }
+            }
+            return mix(h, '}');
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            String[] keys = new String[object.length()];
+            int i = 0;
+            for (Iterator<String> it = object.keys(); it.hasNext(); ) {
+                keys[i++] = it.next();
+            }
+            Arrays.sort(keys);
+            h = mix(h, '{');
+            for (String key : keys) {
+                if (!IGNORED_KEYS.contains(key)) {
+                    h = hash(mix(string(h, key), ':'), object.opt(key));
+                }
+            }
+            return mix(h, '}');
+        } else if (value instanceof List) {
+            h = mix(h, '[');
+            for (Object item : (List<?>) value) {
+                h = hash(h, item);
+            }
+            return mix(h, ']');
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            h = mix(h, '[');
+            for (int i = 0; i < array.length(); i++) {
+                h = hash(h, array.opt(i));
+            }
+            return mix(h, ']');
+        } else if (value instanceof Number) {
+            long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            h = mix(h, '#');
+            for (int i = 0; i < 8; i++) {
+                h = mix(h, (int) (bits >>> (i * 8)) & 0xff);
+            }
+            return h;
+        } else if (value instanceof Boolean) {
+            return mix(h, (Boolean) value ? 't' : 'f');
+        }
+        return string(mix(h, '"'), value.toString());
+    }
+
+    private static long string(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            h = mix(mix(h, c & 0xff), c >>> 8);
+        }
+        return h;
+    }
+
+    private static long mix(long h, int b) {
+        return (h ^ b) * FNV_PRIME;
+    }
+}
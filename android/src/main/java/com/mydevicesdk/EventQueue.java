@@ -0,0 +1,304 @@
+package com.mydevicesdk;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, crash-safe event queue backed by a single segment file.
+ *
+ * Layout: a 16 byte header (magic, version, head offset) followed by records
+ * framed as [int length][int crc32][bytes]. The head offset points at the
+ * oldest record that has not been acknowledged by the server. A torn write
+ * at the tail is detected by the CRC on open and truncated away.
+ */
+final class EventQueue {
+    private static final String TAG = "MySdk";
+    private static final int MAGIC = 0x4D595131; // "MYQ1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_OVERHEAD = 8;
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private static final long COMPACT_THRESHOLD = 64 * 1024;
+
+    private final File file;
+    private final byte[] frame = new byte[RECORD_OVERHEAD];
+    private long maxBytes;
+    private RandomAccessFile raf;
+    private long head;
+    private long tail;
+    private int count;
+    private long droppedCount;
+
+    /** A run of records read from the head of the queue, acknowledged with {@link #commit}. */
+    static final class Batch {
+        final List<byte[]> records;
+        final long endOffset;
+
+        Batch(List<byte[]> records, long endOffset) {
+            this.records = records;
+            this.endOffset = endOffset;
+        }
+
+        int size() {
+            return records.size();
+        }
+    }
+
+    EventQueue(File file, long maxBytes) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        open();
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    // Records discarded for size or to stay under maxBytes since open
+    synchronized long droppedCount() {
+        return droppedCount;
+    }
+
+    synchronized long sizeBytes() {
+        return tail - head;
+    }
+
+    // Append one record; the oldest records are dropped when the queue is full
+    synchronized boolean append(byte[] record) throws IOException {
+        boolean written = write(record);
+        if (written) {
+            raf.getFD().sync();
+        }
+        return written;
+    }
+
+    // Append a run of records with a single sync, returns how many were written
+    synchronized int appendAll(List<byte[]> records) throws IOException {
+        int written = 0;
+        for (int i = 0; i < records.size(); i++) {
+            if (write(records.get(i))) {
+                written++;
+            }
+        }
+        if (written > 0) {
+            raf.getFD().sync();
+        }
+        return written;
+    }
+
+    // Read up to maxRecords from the head without removing them
+    synchronized Batch peek(int maxRecords) throws IOException {
+        List<byte[]> records = new ArrayList<>(Math.min(maxRecords, count));
+        long offset = head;
+        while (records.size() < maxRecords && offset < tail) {
+            raf.seek(offset);
+            raf.readFully(frame);
+            int length = getInt(frame, 0);
+            byte[] record = new byte[length];
+            raf.readFully(record);
+            records.add(record);
+            offset += RECORD_OVERHEAD + length;
+        }
+        return new Batch(records, offset);
+    }
+
+    // Acknowledge a batch returned by peek, releasing its space
+    synchronized void commit(Batch batch) throws IOException {
+        if (batch.endOffset <= head) {
+            return;
+        }
+        count = Math.max(0, count - batch.size());
+        writeHead(batch.endOffset);
+        if (head == tail) {
+            reset();
+        }
+    }
+
+    // Remove a batch returned by peek without uploading it; counted as dropped
+    synchronized void discard(Batch batch) throws IOException {
+        if (batch.endOffset > head) {
+            droppedCount += batch.size();
+        }
+        commit(batch);
+    }
+
+    synchronized void close() {
+        try {
+            raf.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private void open() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < HEADER_SIZE) {
+            reset();
+            return;
+        }
+
+        raf.seek(0);
+        int magic = raf.readInt();
+        int version = raf.readInt();
+        long storedHead = raf.readLong();
+        if (magic != MAGIC || version != VERSION || storedHead < HEADER_SIZE || storedHead > raf.length()) {
+            Log.w(TAG, "⚠️ Event queue header invalid, resetting");
+            reset();
+            return;
+        }
+
+        // Walk the records after the head, stopping at the first torn or corrupt one
+        head = storedHead;
+        long offset = head;
+        long length = raf.length();
+        int records = 0;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_OVERHEAD <= length) {
+            raf.seek(offset);
+            int size = raf.readInt();
+            int checksum = raf.readInt();
+            if (size <= 0 || size > MAX_RECORD_SIZE || offset + RECORD_OVERHEAD + size > length) {
+                break;
+            }
+            byte[] record = new byte[size];
+            raf.readFully(record);
+            crc.reset();
+            crc.update(record, 0, size);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            offset += RECORD_OVERHEAD + size;
+            records++;
+        }
+        if (offset < length) {
+            Log.w(TAG, "⚠️ Truncating " + (length - offset) + " bytes of damaged event queue tail");
+            raf.setLength(offset);
+        }
+        tail = offset;
+        count = records;
+    }
+
+    private boolean write(byte[] record) throws IOException {
+        if (record.length == 0 || record.length > MAX_RECORD_SIZE) {
+            Log.w(TAG, "⚠️ Dropping event of " + record.length + " bytes");
+            droppedCount++;
+            return false;
+        }
+        long needed = RECORD_OVERHEAD + record.length;
+        if (tail - head + needed > maxBytes) {
+            dropOldest(tail - head + needed - maxBytes);
+        }
+        if (head > COMPACT_THRESHOLD && tail + needed > maxBytes + HEADER_SIZE) {
+            compact();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        putInt(frame, 0, record.length);
+        putInt(frame, 4, (int) crc.getValue());
+        raf.seek(tail);
+        raf.write(frame);
+        raf.write(record);
+        tail += needed;
+        count++;
+        return true;
+    }
+
+    private void reset() throws IOException {
+        raf.setLength(HEADER_SIZE);
+        raf.seek(0);
+        raf.writeInt(MAGIC);
+        raf.writeInt(VERSION);
+        raf.writeLong(HEADER_SIZE);
+        raf.getFD().sync();
+        head = HEADER_SIZE;
+        tail = HEADER_SIZE;
+        count = 0;
+    }
+
+    private void writeHead(long newHead) throws IOException {
+        raf.seek(8);
+        raf.writeLong(newHead);
+        raf.getFD().sync();
+        head = newHead;
+    }
+
+    // Advance the head past at least the given number of bytes
+    private void dropOldest(long bytes) throws IOException {
+        long offset = head;
+        int dropped = 0;
+        while (offset < tail && offset - head < bytes) {
+            raf.seek(offset);
+            offset += RECORD_OVERHEAD + raf.readInt();
+            dropped++;
+        }
+        count -= dropped;
+        droppedCount += dropped;
+        writeHead(offset);
+        Log.w(TAG, "⚠️ Event queue full, dropped " + dropped + " oldest events");
+        if (head == tail) {
+            reset();
+        }
+    }
+
+    // Rewrite the live records into a fresh segment so acknowledged space is reclaimed
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(HEADER_SIZE);
+            byte[] buffer = new byte[8192];
+            long offset = head;
+            raf.seek(offset);
+            while (offset < tail) {
+                int n = raf.read(buffer, 0, (int) Math.min(buffer.length, tail - offset));
+                if (n < 0) {
+                    break;
+                }
+                out.write(buffer, 0, n);
+                offset += n;
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        raf.close();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            raf = new RandomAccessFile(file, "rw");
+            return;
+        }
+        raf = new RandomAccessFile(file, "rw");
+        tail = HEADER_SIZE + (tail - head);
+        head = HEADER_SIZE;
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+}
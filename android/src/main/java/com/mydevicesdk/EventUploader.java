@@ -0,0 +1,358 @@
+package com.mydevicesdk;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single uploader thread for the SDK.
+ *
+ * Producers hand serialized events to a bounded {@link DispatchQueue}; this
+ * thread is the only writer of the on-disk {@link EventQueue}, and drains it in
+ * batches into a single /events request every flushIntervalMs, or as soon as
+ * batchSize events are waiting. In deferred mode it only persists events, and
+ * uploads happen when {@link UploadWorker} asks for them. Failed batches stay
+ * on disk and are retried as {@link RetryPolicy} decides.
+ */
+final class EventUploader implements Runnable {
+    private static final String TAG = "MySdk";
+    private static final int DRAIN_CHUNK = 256;
+    private static final LatencyHistogram UPLOAD_LATENCY = SdkMetrics.histogram("upload.batch");
+    private static final AtomicLong BATCHES_SENT = SdkMetrics.counter("upload.batches");
+    private static final AtomicLong EVENTS_SENT = SdkMetrics.counter("upload.events");
+    private static final AtomicLong BATCHES_FAILED = SdkMetrics.counter("upload.failures");
+    private static final AtomicLong RETRIES = SdkMetrics.counter("upload.retries");
+    private static final AtomicLong REJECTED = SdkMetrics.counter("upload.rejectedEvents");
+    private static final LatencyHistogram APPEND_LATENCY = SdkMetrics.histogram("queue.append");
+    private static final int TRACE_ENQUEUE = TraceRecorder.register("queue.enqueue");
+    private static final int TRACE_RETRY = TraceRecorder.register("upload.retry");
+    private static final int TRACE_PAUSED = TraceRecorder.register("upload.paused");
+    private static final int TRACE_DEQUEUE = TraceRecorder.register("queue.dequeue");
+    private static final int TRACE_DEQUEUE_BYTES = TraceRecorder.register("queue.dequeueBytes");
+
+    private final BatchSender sender;
+    private final EventQueue queue;
+    private final DispatchQueue<byte[]> dispatch;
+    private final Thread thread;
+    private volatile int batchSize;
+    private volatile long flushIntervalMs;
+    private volatile boolean flushRequested;
+    private volatile boolean deferred;
+    private volatile double flushScale = 1.0;
+    private volatile boolean closed;
+    private final RetryPolicy retry = new RetryPolicy();
+    private long retryDelayMs;
+
+    // Flushes asked for by flushAndWait, and how many of them have finished
+    private final Object flushLock = new Object();
+    private long flushesRequested;
+    private long flushesDone;
+    private boolean lastFlushOk;
+
+    // Delivery accounting: events found on disk at start, and events uploaded since
+    private final long preexisting;
+    private volatile long committed;
+
+    EventUploader(File queueFile, BatchSender sender, int batchSize, long flushIntervalMs, long maxQueueBytes,
+                  int dispatchCapacity, BackpressurePolicy policy, long blockTimeoutMs) throws IOException {
+        this.sender = sender;
+        this.queue = new EventQueue(queueFile, maxQueueBytes);
+        this.dispatch = new DispatchQueue<>(dispatchCapacity, policy, blockTimeoutMs);
+        this.preexisting = queue.size();
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.thread = new Thread(this, "MySdk-uploader");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void configure(int batchSize, long flushIntervalMs, long maxQueueBytes) {
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue.setMaxBytes(maxQueueBytes);
+    }
+
+    void setBackpressure(BackpressurePolicy policy, long blockTimeoutMs) {
+        dispatch.setPolicy(policy, blockTimeoutMs);
+    }
+
+    // Called from any thread; never touches the disk
+    boolean enqueue(byte[] record) {
+        if (closed) {
+            return false;
+        }
+        boolean accepted = dispatch.publish(record);
+        TraceRecorder.instant(TRACE_ENQUEUE, accepted ? record.length : -1);
+        return accepted;
+    }
+
+    void requestFlush() {
+        flushRequested = true;
+        LockSupport.unpark(thread);
+    }
+
+    // Stretch or shrink the flush interval with the sampling rate, see AdaptiveRate
+    void setFlushScale(double scale) {
+        this.flushScale = scale;
+    }
+
+    long effectiveFlushIntervalMs() {
+        return (long) (flushIntervalMs * flushScale);
+    }
+
+    private long flushDelayNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(effectiveFlushIntervalMs());
+    }
+
+    // Leave uploads to UploadScheduler; events are still written to disk right away
+    void setDeferred(boolean deferred) {
+        this.deferred = deferred;
+        LockSupport.unpark(thread);
+    }
+
+    boolean isDeferred() {
+        return deferred;
+    }
+
+    // Flush on the uploader thread and block until it is done; false on failure or timeout
+    boolean flushAndWait(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (flushLock) {
+            long ticket = ++flushesRequested;
+            requestFlush();
+            while (flushesDone < ticket) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                flushLock.wait(remaining);
+            }
+            return lastFlushOk;
+        }
+    }
+
+    // Stop the uploader thread once its current step is done, persist what is still in the
+    // dispatch queue and close the disk queue. Later enqueue calls are refused.
+    void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    int dispatchDepth() {
+        return dispatch.depth();
+    }
+
+    int queuedEvents() {
+        return queue.size();
+    }
+
+    long droppedEvents() {
+        return dispatch.droppedCount();
+    }
+
+    long coalescedEvents() {
+        return dispatch.coalescedCount();
+    }
+
+    RetryPolicy.BreakerState breakerState() {
+        return retry.state();
+    }
+
+    // Events accepted by enqueue since start
+    long acceptedEvents() {
+        return dispatch.acceptedCount();
+    }
+
+    // Accepted events that were either uploaded or lost. Both queues are FIFO, so once this
+    // reaches the acceptedEvents() value read right after an enqueue, that event has left the device.
+    long settledEvents() {
+        return committed + lostEvents() - preexisting;
+    }
+
+    // Accepted events that will never be uploaded
+    long lostEvents() {
+        return queue.droppedCount() + dispatch.evictedCount() + dispatch.coalescedCount();
+    }
+
+    @Override
+    public void run() {
+        List<byte[]> pending = new ArrayList<>(DRAIN_CHUNK);
+        long nextFlushAt = System.nanoTime() + flushDelayNanos();
+        boolean lastFlushFailed = false;
+        while (!closed) {
+            try {
+                pending.clear();
+                if (dispatch.drainTo(pending, DRAIN_CHUNK) > 0) {
+                    persist(pending);
+                }
+
+                long now = System.nanoTime();
+                // A full batch only triggers an early flush if the last one went through
+                boolean batchReady = !lastFlushFailed && queue.size() >= batchSize;
+                boolean due = !deferred && (now >= nextFlushAt || batchReady);
+                if (flushRequested || due) {
+                    long ticket;
+                    // Together, so a flushAndWait arriving now is either served by this flush or sets the flag again
+                    synchronized (flushLock) {
+                        flushRequested = false;
+                        ticket = flushesRequested;
+                    }
+                    boolean ok = flush();
+                    lastFlushFailed = !ok;
+                    synchronized (flushLock) {
+                        flushesDone = ticket;
+                        lastFlushOk = ok;
+                        flushLock.notifyAll();
+                    }
+                    nextFlushAt = System.nanoTime()
+                            + (ok ? flushDelayNanos() : TimeUnit.MILLISECONDS.toNanos(retryDelayMs));
+                } else if (pending.isEmpty()) {
+                    if (deferred) {
+                        // Nothing is due on a timer; requestFlush, setDeferred or a new event unparks us
+                        dispatch.awaitItems();
+                    } else {
+                        dispatch.awaitItems(nextFlushAt - now);
+                    }
+                }
+            } catch (Throwable t) {
+                Log.e(TAG, "❌ Uploader loop error: ", t);
+                dispatch.awaitItems(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        shutDown(pending);
+    }
+
+    private void shutDown(List<byte[]> pending) {
+        try {
+            pending.clear();
+            while (dispatch.drainTo(pending, DRAIN_CHUNK) > 0) {
+                persist(pending);
+                pending.clear();
+            }
+        } catch (Throwable t) {
+            Log.e(TAG, "❌ Error persisting events on close: ", t);
+        }
+        queue.close();
+        // Nothing will serve flushes still waiting
+        synchronized (flushLock) {
+            flushesDone = flushesRequested;
+            lastFlushOk = false;
+            flushLock.notifyAll();
+        }
+    }
+
+    private void persist(List<byte[]> records) throws IOException {
+        long start = System.nanoTime();
+        queue.appendAll(records);
+        APPEND_LATENCY.recordSince(start, records.size());
+    }
+
+    // Records and bytes of the batch about to be sent; two events because a trace event has one value
+    private static void traceDequeue(EventQueue.Batch batch) {
+        long bytes = 0;
+        for (byte[] record : batch.records) {
+            bytes += record.length;
+        }
+        TraceRecorder.instant(TRACE_DEQUEUE, batch.size());
+        TraceRecorder.instant(TRACE_DEQUEUE_BYTES, bytes);
+    }
+
+    // Upload what is on disk when the flush starts, returns false if a batch could not be
+    // sent; retryDelayMs then holds how long to wait before the next attempt. Events queued
+    // meanwhile wait for the next flush, so producers can't keep one going forever.
+    private boolean flush() {
+        int limit = batchSize;
+        boolean tokenRetried = false;
+        try {
+            int remaining = queue.size();
+            // close() only waits for the batch in flight
+            while (!closed && remaining > 0) {
+                long nowMs = System.currentTimeMillis();
+                if (!retry.allowRequest(nowMs)) {
+                    retryDelayMs = retry.openRemainingMs(nowMs);
+                    TraceRecorder.instant(TRACE_PAUSED, retryDelayMs);
+                    Log.w(TAG, "⚠️ Uploads paused for " + retryDelayMs + " ms, backend unhealthy, keeping " + queue.size() + " events queued");
+                    return false;
+                }
+                EventQueue.Batch batch = queue.peek(Math.min(limit, remaining));
+                if (batch.size() == 0) {
+                    return true;
+                }
+                traceDequeue(batch);
+                long start = System.nanoTime();
+                HttpTransport.PostResult result = null;
+                RetryPolicy.Outcome outcome;
+                try {
+                    result = sender.send(batch.records);
+                    outcome = RetryPolicy.classify(result.code);
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Batch upload failed: " + e);
+                    outcome = RetryPolicy.Outcome.NETWORK;
+                } finally {
+                    UPLOAD_LATENCY.recordSince(start, batch.size());
+                }
+
+                if (outcome == RetryPolicy.Outcome.SUCCESS) {
+                    queue.commit(batch);
+                    remaining -= batch.size();
+                    committed += batch.size();
+                    retry.onSuccess();
+                    BATCHES_SENT.incrementAndGet();
+                    EVENTS_SENT.addAndGet(batch.size());
+                    Log.i(TAG, "✅ Batch of " + batch.size() + " events sent, response code: " + result.code);
+                    // Grow back after splitting a rejected batch
+                    limit = Math.min(batchSize, limit * 2);
+
+                    // Keep the dispatch queue moving while a large backlog is uploaded
+                    List<byte[]> pending = new ArrayList<>();
+                    if (dispatch.drainTo(pending, DRAIN_CHUNK) > 0) {
+                        persist(pending);
+                    }
+                    continue;
+                }
+                if (outcome == RetryPolicy.Outcome.UNAUTHORIZED && !tokenRetried) {
+                    // Token expired or revoked, the sender dropped it: send again right away with a new one
+                    tokenRetried = true;
+                    RETRIES.incrementAndGet();
+                    Log.w(TAG, "⚠️ Token rejected, response code: " + result.code + ", retrying with a new token");
+                    continue;
+                }
+                if (outcome == RetryPolicy.Outcome.REJECTED) {
+                    // Split the batch until the events the server refuses are isolated, then drop those
+                    if (batch.size() > 1) {
+                        limit = Math.max(1, batch.size() / 2);
+                        Log.w(TAG, "⚠️ Batch of " + batch.size() + " events rejected, response code: " + result.code + ", retrying in halves");
+                    } else {
+                        queue.discard(batch);
+                        remaining--;
+                        REJECTED.incrementAndGet();
+                        Log.e(TAG, "❌ Event rejected by server, response code: " + result.code + ", dropped");
+                    }
+                    continue;
+                }
+
+                BATCHES_FAILED.incrementAndGet();
+                RETRIES.incrementAndGet();
+                long retryAfterMs = result != null ? RetryPolicy.parseRetryAfter(result.retryAfter, nowMs) : 0;
+                retryDelayMs = retry.onFailure(outcome, retryAfterMs, System.currentTimeMillis());
+                TraceRecorder.instant(TRACE_RETRY, retryDelayMs);
+                Log.e(TAG, "❌ Batch upload failed (" + outcome + (result != null ? ", response code: " + result.code : "")
+                        + "), retrying in " + retryDelayMs + " ms, keeping " + queue.size() + " events queued");
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error flushing events: ", e);
+            BATCHES_FAILED.incrementAndGet();
+            retryDelayMs = effectiveFlushIntervalMs();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.mydevicesdk;
+
+import android.util.JsonReader;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+/**
+ * Shared HTTP transport for token and event calls.
+ *
+ * One process-wide OkHttpClient keeps a small pool of warm connections
+ * (HTTP/2 when the server offers it), so consecutive uploads skip the TCP
+ * and TLS handshake. Event batches go out as JSON or, once the server
+ * advertises support, as {@link BinaryBatchEncoder}, compressed while they
+ * stream out with the {@link PayloadCodec} chosen for their size.
+ */
+final class HttpTransport {
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final MediaType BINARY = MediaType.get("application/x-mysdk-batch");
+
+    // Wire format negotiation: we advertise what we can send, the server answers with what it accepts
+    private static final String HEADER_WIRE_FORMATS = "X-MySdk-Wire-Formats";
+    private static final String HEADER_ACCEPT_FORMATS = "X-MySdk-Accept-Formats";
+    // Same for request body encodings beyond gzip
+    private static final String HEADER_ENCODINGS = "X-MySdk-Encodings";
+    private static final String HEADER_ACCEPT_ENCODINGS = "X-MySdk-Accept-Encodings";
+
+    private static final AtomicLong BYTES_SENT = SdkMetrics.counter("http.bytesSent");
+    private static final AtomicLong BYTES_RECEIVED = SdkMetrics.counter("http.bytesReceived");
+    private static final AtomicLong CONNECTIONS = SdkMetrics.counter("http.connections");
+    private static final LatencyHistogram CONNECT_LATENCY = SdkMetrics.histogram("http.connect");
+    private static final LatencyHistogram TTFB_LATENCY = SdkMetrics.histogram("http.ttfb");
+    private static final LatencyHistogram CALL_LATENCY = SdkMetrics.histogram("http.call");
+
+    private static volatile OkHttpClient client;
+    private static volatile boolean binaryEnabled = true;
+    private static volatile boolean serverAcceptsBinary = false;
+    private static volatile boolean serverAcceptsDictionary = false;
+    private static volatile long compressionThreshold = 1024;
+
+    private HttpTransport() {}
+
+    static OkHttpClient client() {
+        OkHttpClient current = client;
+        if (current != null) {
+            return current;
+        }
+        synchronized (HttpTransport.class) {
+            if (client == null) {
+                client = new OkHttpClient.Builder()
+                        .connectionPool(new ConnectionPool(2, 5, TimeUnit.MINUTES))
+                        .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                        .connectTimeout(15, TimeUnit.SECONDS)
+                        .writeTimeout(30, TimeUnit.SECONDS)
+                        .readTimeout(30, TimeUnit.SECONDS)
+                        // A silent re-POST could duplicate a batch the server already stored; RetryPolicy decides
+                        .retryOnConnectionFailure(false)
+                        .eventListenerFactory(TrafficListener.FACTORY)
+                        .build();
+            }
+            return client;
+        }
+    }
+
+    // POST /get-token and pull the "token" field out of the streamed response
+    static String fetchToken(String baseUrl, String appId, String deviceId) throws Exception {
+        JSONObject body = new JSONObject();
+        body.put("appId", appId);
+        body.put("deviceId", deviceId);
+
+        Request request = new Request.Builder()
+                .url(baseUrl + "/get-token")
+                .post(RequestBody.create(body.toString(), JSON))
+                .build();
+
+        try (Response response = client().newCall(request).execute()) {
+            ResponseBody responseBody = response.body();
+            if (!response.isSuccessful() || responseBody == null) {
+                throw new IOException("Token request failed, response code: " + response.code());
+            }
+            JsonReader reader = new JsonReader(responseBody.charStream());
+            try {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("token".equals(reader.nextName())) {
+                        return reader.nextString();
+                    }
+                    reader.skipValue();
+                }
+            } finally {
+                reader.close();
+            }
+            throw new IOException("Token missing from response");
+        }
+    }
+
+    static void setBinaryEnabled(boolean enabled) {
+        binaryEnabled = enabled;
+    }
+
+    // Bodies below this many bytes are sent uncompressed (a quarter of it with the dictionary)
+    static void setCompressionThreshold(long bytes) {
+        compressionThreshold = bytes;
+    }
+
+    /** Response code of an /events call, with the Retry-After header if there was one. */
+    static final class PostResult {
+        final int code;
+        final String retryAfter;
+
+        PostResult(int code, String retryAfter) {
+            this.code = code;
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    // POST /events with the already-serialized records.
+    // Batches go out as binary-v1 once the server has said it accepts it, JSON otherwise.
+    static PostResult postEvents(String baseUrl, String token, List<byte[]> records) throws IOException {
+        if (binaryEnabled && serverAcceptsBinary) {
+            byte[] encoded = encodeBinary(token, records);
+            if (encoded != null) {
+                PostResult result = post(baseUrl, new EncodedBody(BINARY, encoded, codecFor(encoded.length)));
+                if (result.code != 415) {
+                    return result;
+                }
+                // Server stopped accepting binary, fall back to JSON for this process
+                serverAcceptsBinary = false;
+            }
+        }
+        long jsonBytes = token.length() + 24;
+        for (byte[] record : records) {
+            jsonBytes += record.length + 1;
+        }
+        PostResult result = post(baseUrl, new BatchBody(token, records, codecFor(jsonBytes)));
+        if (result.code == 415 && serverAcceptsDictionary) {
+            // Dictionary no longer accepted, plain gzip from here on
+            serverAcceptsDictionary = false;
+            result = post(baseUrl, new BatchBody(token, records, codecFor(jsonBytes)));
+        }
+        return result;
+    }
+
+    private static PayloadCodec codecFor(long bodyBytes) {
+        return PayloadCodec.choose(bodyBytes, compressionThreshold, serverAcceptsDictionary);
+    }
+
+    private static PostResult post(String baseUrl, EncodedRequestBody body) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(baseUrl + "/events")
+                .header(HEADER_WIRE_FORMATS, binaryEnabled ? BinaryBatchEncoder.FORMAT + ", json" : "json")
+                .header(HEADER_ENCODINGS, PayloadCodec.DEFLATE_DICT.contentEncoding + ", gzip");
+        if (body.codec.contentEncoding != null) {
+            builder.header("Content-Encoding", body.codec.contentEncoding);
+        }
+        Request request = builder.post(body).build();
+
+        // Closing the response returns the connection to the pool
+        try (Response response = client().newCall(request).execute()) {
+            if (binaryEnabled) {
+                String accepted = response.header(HEADER_ACCEPT_FORMATS);
+                if (accepted != null) {
+                    serverAcceptsBinary = accepted.contains(BinaryBatchEncoder.FORMAT);
+                }
+            }
+            String encodings = response.header(HEADER_ACCEPT_ENCODINGS);
+            if (encodings != null) {
+                serverAcceptsDictionary = encodings.contains(PayloadCodec.DEFLATE_DICT.contentEncoding);
+            }
+            return new PostResult(response.code(), response.header("Retry-After"));
+        }
+    }
+
+    private static byte[] encodeBinary(String token, List<byte[]> records) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(records.size() * 256);
+            BinaryBatchEncoder.encode(token, records, out);
+            return out.toByteArray();
+        } catch (Exception e) {
+            Log.w("MySdk", "⚠️ Binary encoding failed, sending batch as JSON");
+            return null;
+        }
+    }
+
+    /**
+     * Per-call timings (connect, time to first byte, whole call) into histograms and the trace,
+     * plus bytes on the wire (after compression) and new connections.
+     */
+    private static final class TrafficListener extends EventListener {
+        static final EventListener.Factory FACTORY = call -> new TrafficListener();
+
+        private long callStart;
+        private long connectStart;
+        private long requestSent;
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            CONNECTIONS.incrementAndGet();
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            CONNECT_LATENCY.recordSince(connectStart);
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestSent = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            BYTES_SENT.addAndGet(byteCount);
+            requestSent = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if (requestSent != 0) {
+                TTFB_LATENCY.recordSince(requestSent);
+            }
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            BYTES_RECEIVED.addAndGet(byteCount);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            CALL_LATENCY.recordSince(callStart);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException e) {
+            CALL_LATENCY.recordSince(callStart, -1);
+        }
+    }
+
+    /** Request body that knows which encoding it is written with. */
+    private abstract static class EncodedRequestBody extends RequestBody {
+        final PayloadCodec codec;
+
+        EncodedRequestBody(PayloadCodec codec) {
+            this.codec = codec;
+        }
+    }
+
+    /** Writes {"apiKey": token, "events": [...]} through the codec without building it in memory. */
+    private static final class BatchBody extends EncodedRequestBody {
+        private final String token;
+        private final List<byte[]> records;
+
+        BatchBody(String token, List<byte[]> records, PayloadCodec codec) {
+            super(codec);
+            this.token = token;
+            this.records = records;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BufferedSink out = codec.wrap(sink);
+            out.writeUtf8("{\"apiKey\":").writeUtf8(JSONObject.quote(token)).writeUtf8(",\"events\":[");
+            for (int i = 0; i < records.size(); i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.write(records.get(i));
+            }
+            out.writeUtf8("]}");
+            out.close();
+        }
+    }
+
+    /** Writes a pre-encoded body through the codec. */
+    private static final class EncodedBody extends EncodedRequestBody {
+        private final MediaType type;
+        private final byte[] bytes;
+
+        EncodedBody(MediaType type, byte[] bytes, PayloadCodec codec) {
+            super(codec);
+            this.type = type;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return type;
+        }
+
+        @Override
+        public long contentLength() {
+            return codec == PayloadCodec.IDENTITY ? bytes.length : -1;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BufferedSink out = codec.wrap(sink);
+            out.write(bytes);
+            out.close();
+        }
+    }
+}
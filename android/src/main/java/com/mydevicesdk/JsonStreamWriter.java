@@ -0,0 +1,288 @@
+package com.mydevicesdk;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming JSON writer that encodes straight to UTF-8 in a reusable buffer.
+ *
+ * Unlike JSONObject.toString() it never builds the whole document as a
+ * String (and then re-encodes it), so serializing a payload costs one
+ * exact-size byte[] for the result. One instance per thread via {@link #local()}.
+ */
+final class JsonStreamWriter {
+    private static final int INITIAL_CAPACITY = 2048;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final int MAX_DEPTH = 64;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private static final ThreadLocal<JsonStreamWriter> LOCAL = new ThreadLocal<JsonStreamWriter>() {
+        @Override
+        protected JsonStreamWriter initialValue() {
+            return new JsonStreamWriter();
+        }
+    };
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int len;
+    // Per nesting level: true once the first element has been written
+    private final boolean[] hasElements = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    static JsonStreamWriter local() {
+        return LOCAL.get().reset();
+    }
+
+    JsonStreamWriter reset() {
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+        len = 0;
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    // Serialize a JSONObject tree into a fresh byte[] of exactly the encoded size
+    byte[] toBytes(JSONObject object) throws Exception {
+        reset();
+        value(object);
+        return toByteArray();
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, len);
+    }
+
+    int size() {
+        return len;
+    }
+
+    // The internal buffer, valid up to size() until the next write
+    byte[] buffer() {
+        return buf;
+    }
+
+    JsonStreamWriter beginObject() {
+        return open('{');
+    }
+
+    JsonStreamWriter endObject() {
+        return close('}');
+    }
+
+    JsonStreamWriter beginArray() {
+        return open('[');
+    }
+
+    JsonStreamWriter endArray() {
+        return close(']');
+    }
+
+    JsonStreamWriter name(String name) {
+        separator();
+        string(name);
+        append(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonStreamWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        separator();
+        string(value);
+        return this;
+    }
+
+    JsonStreamWriter value(boolean value) {
+        separator();
+        ascii(value ? "true" : "false");
+        return this;
+    }
+
+    JsonStreamWriter value(long value) {
+        separator();
+        ascii(Long.toString(value));
+        return this;
+    }
+
+    JsonStreamWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        separator();
+        if (value == (long) value) {
+            ascii(Long.toString((long) value));
+        } else {
+            ascii(Double.toString(value));
+        }
+        return this;
+    }
+
+    JsonStreamWriter nullValue() {
+        separator();
+        ascii("null");
+        return this;
+    }
+
+    // Write any org.json value (object, array, string, number, boolean, null), or a Map/List of them
+    JsonStreamWriter value(Object value) throws Exception {
+        if (value == null || value == JSONObject.NULL) {
+            return nullValue();
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            beginObject();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                name(key);
+                value(object.opt(key));
+            }
+            return endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                value(array.opt(i));
+            }
+            return endArray();
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        } else if (value instanceof List) {
+            beginArray();
+            for (Object item : (List<?>) value) {
+                value(item);
+            }
+            return endArray();
+        } else if (value instanceof String) {
+            return value((String) value);
+        } else if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            return value(((Number) value).doubleValue());
+        }
+        return value(value.toString());
+    }
+
+    private JsonStreamWriter open(char c) {
+        separator();
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        hasElements[depth++] = false;
+        append(c);
+        return this;
+    }
+
+    private JsonStreamWriter close(char c) {
+        depth--;
+        append(c);
+        return this;
+    }
+
+    // Emit a comma before every element except the first at this level
+    private void separator() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElements[depth - 1]) {
+                append(',');
+            } else {
+                hasElements[depth - 1] = true;
+            }
+        }
+    }
+
+    private void string(String s) {
+        append('"');
+        int n = s.length();
+        ensure(n + 2);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                append(c);
+            } else if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            } else if (c == '\n') {
+                append('\\');
+                append('n');
+            } else if (c == '\r') {
+                append('\\');
+                append('r');
+            } else if (c == '\t') {
+                append('\\');
+                append('t');
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                ensure(6);
+                buf[len++] = '\\';
+                buf[len++] = 'u';
+                buf[len++] = HEX[(c >> 12) & 0xF];
+                buf[len++] = HEX[(c >> 8) & 0xF];
+                buf[len++] = HEX[(c >> 4) & 0xF];
+                buf[len++] = HEX[c & 0xF];
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[len++] = (byte) (0xC0 | (c >> 6));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[len++] = (byte) (0xF0 | (cp >> 18));
+                buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                append('?');
+            } else {
+                ensure(3);
+                buf[len++] = (byte) (0xE0 | (c >> 12));
+                buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        append('"');
+    }
+
+    private void ascii(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buf[len++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void append(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mydevicesdk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of microsecond durations.
+ *
+ * Like HdrHistogram with one significant digit: each power of two is split
+ * into {@link #SUB_BUCKETS} linear buckets, so any recorded value is known to
+ * within 12.5%. Recording is a few atomic adds with no allocation; the fixed
+ * bucket array covers up to about 12 days. Timed phases are also written to
+ * the {@link TraceRecorder} under the histogram's name, and {@link #start()}
+ * marks where one begins, so a phase that never ends still shows up.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (40 - SUB_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final int traceName;
+    private final int traceStart;
+
+    LatencyHistogram(String name) {
+        this.traceName = TraceRecorder.register(name);
+        this.traceStart = TraceRecorder.register(name + ".start");
+    }
+
+    // System.nanoTime() to pass to recordSince, after writing a "<name>.start" instant event
+    long start() {
+        return start(0);
+    }
+
+    long start(long value) {
+        TraceRecorder.instant(traceStart, value);
+        return System.nanoTime();
+    }
+
+    void recordSince(long startNanos) {
+        recordSince(startNanos, 0);
+    }
+
+    // value is shown with the trace event, e.g. a batch size
+    void recordSince(long startNanos, long value) {
+        long elapsed = System.nanoTime() - startNanos;
+        record(elapsed / 1000);
+        TraceRecorder.complete(traceName, startNanos, elapsed, value);
+    }
+
+    void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(Math.min(BUCKETS - 1, index(value)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    // count, mean, p50/p90/p99 and max, in milliseconds
+    Map<String, Object> snapshot() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        long total = count.get();
+        map.put("count", total);
+        if (total == 0) {
+            return map;
+        }
+        map.put("meanMs", sum.get() / (double) total / 1000);
+        long[] copy = new long[BUCKETS];
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            seen += copy[i];
+        }
+        long maxValue = max.get();
+        for (double p : PERCENTILES) {
+            map.put("p" + (int) p + "Ms", Math.min(maxValue, valueAt(copy, seen, p)) / 1000.0);
+        }
+        map.put("maxMs", maxValue / 1000.0);
+        return map;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Midpoint of the bucket holding the given percentile
+    private static long valueAt(long[] counts, long total, double percentile) {
+        long target = (long) Math.ceil(total * percentile / 100);
+        long running = 0;
+        for (int i = 0; i < counts.length; i++) {
+            running += counts[i];
+            if (running >= target && counts[i] > 0) {
+                return midpoint(i);
+            }
+        }
+        return midpoint(counts.length - 1);
+    }
+
+    private static long midpoint(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        long low = (1L << exponent) + sub * width;
+        return low + width / 2;
+    }
+}
@@ -0,0 +1,296 @@
+package com.mydevicesdk;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.CancellationTokenSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tiered location lookup that only powers up GPS when it has to.
+ *
+ * 1. The last fix this engine produced, if it is fresh and accurate enough.
+ * 2. getLastLocation, which costs no new acquisition.
+ * 3. getCurrentLocation at the cheapest priority that can meet the accuracy.
+ * 4. getCurrentLocation at high accuracy, only if tier 3 fell short.
+ *
+ * The whole lookup is bounded by a hard timeout that cancels the pending
+ * request; the best fix seen so far is returned if the target wasn't met.
+ * Callers that arrive while a lookup at least as strict is in flight join it
+ * and get the same fix, so concurrent callers cost one acquisition. Callers
+ * must hold a location permission.
+ */
+final class LocationEngine {
+
+    interface Callback {
+        void onLocation(Location location);
+
+        void onError(String code, String message, Exception e);
+    }
+
+    static final class Options {
+        long maxAgeMs = 2 * 60 * 1000;
+        float desiredAccuracyMeters = 100;
+        long timeoutMs = 10000;
+        boolean allowHighAccuracy = true;
+    }
+
+    private static final LatencyHistogram LOOKUP_LATENCY = SdkMetrics.histogram("location.lookup");
+    private static final AtomicLong CACHE_HITS = SdkMetrics.counter("location.cacheHits");
+    private static final AtomicLong TIMEOUTS = SdkMetrics.counter("location.timeouts");
+    private static final AtomicLong FAILURES = SdkMetrics.counter("location.failures");
+    private static final AtomicLong JOINED = SdkMetrics.counter("location.coalesced");
+
+    private static volatile LocationEngine instance;
+
+    private final Context context;
+    private final FusedLocationProviderClient client;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private volatile Location lastFix;
+    // Cleared by invalidatePermission (on resume and after a permission prompt)
+    private volatile Boolean permitted;
+    // Guarded by this
+    private Attempt inFlight;
+
+    // Shared so the module and the collection engine reuse each other's fixes
+    static LocationEngine get(Context context) {
+        LocationEngine current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (LocationEngine.class) {
+            if (instance == null) {
+                instance = new LocationEngine(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    private LocationEngine(Context context) {
+        this.context = context;
+        this.client = LocationServices.getFusedLocationProviderClient(context);
+    }
+
+    // Fine or coarse location granted; cached until the next invalidatePermission
+    boolean hasPermission() {
+        Boolean cached = permitted;
+        if (cached != null) {
+            return cached;
+        }
+        boolean granted = ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+        permitted = granted;
+        return granted;
+    }
+
+    void invalidatePermission() {
+        permitted = null;
+    }
+
+    void request(Options options, Callback callback) {
+        Location cached = lastFix;
+        if (isGoodEnough(cached, options)) {
+            CACHE_HITS.incrementAndGet();
+            callback.onLocation(cached);
+            return;
+        }
+        Attempt attempt;
+        synchronized (this) {
+            if (inFlight != null && covers(inFlight.options, options)) {
+                inFlight.callbacks.add(callback);
+                JOINED.incrementAndGet();
+                return;
+            }
+            attempt = new Attempt(options, callback);
+            if (inFlight == null || covers(options, inFlight.options)) {
+                inFlight = attempt;
+            }
+        }
+        attempt.start();
+    }
+
+    // True if a lookup with these options also satisfies a caller asking for the other ones
+    private static boolean covers(Options running, Options wanted) {
+        return running.desiredAccuracyMeters <= wanted.desiredAccuracyMeters
+                && running.maxAgeMs <= wanted.maxAgeMs
+                && (running.allowHighAccuracy || !wanted.allowHighAccuracy);
+    }
+
+    // Callbacks waiting on the attempt; it stops taking new ones once it has finished
+    private List<Callback> detach(Attempt attempt) {
+        synchronized (this) {
+            if (inFlight == attempt) {
+                inFlight = null;
+            }
+            return new ArrayList<>(attempt.callbacks);
+        }
+    }
+
+    /** One lookup walking through the tiers, finished exactly once. */
+    private final class Attempt implements Runnable {
+        private final Options options;
+        // Guarded by the engine
+        private final List<Callback> callbacks = new ArrayList<>(2);
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private final CancellationTokenSource cancellation = new CancellationTokenSource();
+        private final long deadline;
+        private final long startNanos = LOOKUP_LATENCY.start();
+        private Location best;
+
+        Attempt(Options options, Callback callback) {
+            this.options = options;
+            this.callbacks.add(callback);
+            this.deadline = SystemClock.elapsedRealtime() + options.timeoutMs;
+        }
+
+        @SuppressLint("MissingPermission")
+        void start() {
+            handler.postDelayed(this, options.timeoutMs);
+            try {
+                client.getLastLocation()
+                        .addOnSuccessListener(location -> {
+                            // A stale last-known fix is never worth returning, even on timeout
+                            if (location != null && ageMs(location) <= options.maxAgeMs) {
+                                consider(location);
+                            }
+                            if (isGoodEnough(location, options)) {
+                                finish(location);
+                            } else {
+                                current(cheapestPriority(options.desiredAccuracyMeters));
+                            }
+                        })
+                        .addOnFailureListener(e -> current(cheapestPriority(options.desiredAccuracyMeters)));
+            } catch (Exception e) {
+                fail("LOCATION_ERROR", e.getMessage(), e);
+            }
+        }
+
+        @SuppressLint("MissingPermission")
+        private void current(int priority) {
+            if (done.get()) {
+                return;
+            }
+            long remaining = Math.max(1000, deadline - SystemClock.elapsedRealtime());
+            CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                    .setPriority(priority)
+                    .setMaxUpdateAgeMillis(options.maxAgeMs)
+                    .setDurationMillis(remaining)
+                    .build();
+            try {
+                client.getCurrentLocation(request, cancellation.getToken())
+                        .addOnSuccessListener(location -> {
+                            consider(location);
+                            if (isGoodEnough(location, options) || !canEscalate(priority)) {
+                                finishWithBest();
+                            } else {
+                                current(Priority.PRIORITY_HIGH_ACCURACY);
+                            }
+                        })
+                        .addOnFailureListener(e -> {
+                            if (canEscalate(priority)) {
+                                current(Priority.PRIORITY_HIGH_ACCURACY);
+                            } else if (best != null) {
+                                finishWithBest();
+                            } else {
+                                fail("LOCATION_ERROR", e.getMessage(), e);
+                            }
+                        });
+            } catch (Exception e) {
+                fail("LOCATION_ERROR", e.getMessage(), e);
+            }
+        }
+
+        private boolean canEscalate(int priority) {
+            return options.allowHighAccuracy && priority != Priority.PRIORITY_HIGH_ACCURACY
+                    && SystemClock.elapsedRealtime() < deadline;
+        }
+
+        private void consider(Location location) {
+            if (location != null && (best == null || location.getAccuracy() < best.getAccuracy()
+                    || location.getTime() > best.getTime() + options.maxAgeMs)) {
+                best = location;
+            }
+        }
+
+        // Hard timeout
+        @Override
+        public void run() {
+            cancellation.cancel();
+            if (best != null) {
+                finishWithBest();
+            } else {
+                fail("LOCATION_TIMEOUT", "Location not available within " + options.timeoutMs + "ms", null);
+            }
+        }
+
+        private void finishWithBest() {
+            if (best != null) {
+                finish(best);
+            } else {
+                fail("LOCATION_ERROR", "Unable to retrieve location", null);
+            }
+        }
+
+        private void finish(Location location) {
+            if (done.compareAndSet(false, true)) {
+                handler.removeCallbacks(this);
+                LOOKUP_LATENCY.recordSince(startNanos);
+                lastFix = location;
+                for (Callback callback : detach(this)) {
+                    callback.onLocation(location);
+                }
+            }
+        }
+
+        private void fail(String code, String message, Exception e) {
+            if (done.compareAndSet(false, true)) {
+                handler.removeCallbacks(this);
+                cancellation.cancel();
+                LOOKUP_LATENCY.recordSince(startNanos);
+                ("LOCATION_TIMEOUT".equals(code) ? TIMEOUTS : FAILURES).incrementAndGet();
+                for (Callback callback : detach(this)) {
+                    callback.onError(code, message, e);
+                }
+            }
+        }
+    }
+
+    private static boolean isGoodEnough(Location location, Options options) {
+        if (location == null) {
+            return false;
+        }
+        return ageMs(location) <= options.maxAgeMs
+                && location.hasAccuracy() && location.getAccuracy() <= options.desiredAccuracyMeters;
+    }
+
+    private static long ageMs(Location location) {
+        return (SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos()) / 1000000;
+    }
+
+    // Lowest-power priority that can normally meet the requested accuracy
+    private static int cheapestPriority(float desiredAccuracyMeters) {
+        if (desiredAccuracyMeters >= 10000) {
+            return Priority.PRIORITY_LOW_POWER;
+        }
+        if (desiredAccuracyMeters >= 100) {
+            return Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+        }
+        return Priority.PRIORITY_HIGH_ACCURACY;
+    }
+}
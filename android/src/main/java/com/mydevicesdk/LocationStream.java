@@ -0,0 +1,234 @@
+package com.mydevicesdk;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.location.Location;
+import android.provider.Settings;
+import android.util.Log;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Continuous location track, uploaded as simplified routes.
+ *
+ * Fixes come from requestLocationUpdates with a minimum displacement, so a
+ * device that stays put produces nothing, and a max update delay, so the
+ * location hardware batches fixes while the CPU sleeps and delivers them
+ * together. Buffered fixes are run through {@link TrajectorySimplifier}
+ * and queued as one "track" event per flush window; a timer flushes them
+ * even if no further fix arrives (the device stopped). Callers must hold a
+ * location permission; fixes only keep coming in the background while the
+ * app is allowed background location.
+ */
+final class LocationStream {
+    private static final String TAG = "MySdk";
+    private static final int MAX_PENDING = 500;
+    private static final AtomicLong FIXES = SdkMetrics.counter("location.streamFixes");
+    private static final AtomicLong KEPT = SdkMetrics.counter("location.streamKept");
+
+    static final class Options {
+        long intervalMs = 60 * 1000;
+        float minDistanceMeters = 25;
+        long maxDelayMs = 10 * 60 * 1000;
+        boolean highAccuracy = false;
+        // Fixes worse than this are discarded, the tolerance never goes below minToleranceMeters
+        float maxAccuracyMeters = 200;
+        float minToleranceMeters = 10;
+        // Pending fixes are simplified and queued at least this often
+        long flushAfterMs = 15 * 60 * 1000;
+    }
+
+    private static volatile LocationStream instance;
+
+    private final Context context;
+    private final FusedLocationProviderClient client;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "MySdk-track");
+        t.setDaemon(true);
+        return t;
+    });
+    private final SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+
+    // Guarded by this; fixes are appended on the executor
+    private Options options;
+    private LocationCallback callback;
+    private final List<Location> pending = new ArrayList<>();
+    private long pendingSince;
+    private ScheduledFuture<?> flushTimer;
+    // Last fix of the previous flush, so consecutive tracks join up
+    private Location anchor;
+    private String deviceId;
+
+    static LocationStream get(Context context) {
+        LocationStream current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (LocationStream.class) {
+            if (instance == null) {
+                instance = new LocationStream(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    private LocationStream(Context context) {
+        this.context = context;
+        this.client = LocationServices.getFusedLocationProviderClient(context);
+        this.isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @SuppressLint("MissingPermission")
+    synchronized void start(Options options) {
+        stop();
+        this.options = options;
+        int priority = options.highAccuracy ? Priority.PRIORITY_HIGH_ACCURACY : Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+        LocationRequest request = new LocationRequest.Builder(priority, options.intervalMs)
+                .setMinUpdateIntervalMillis(options.intervalMs / 2)
+                .setMinUpdateDistanceMeters(options.minDistanceMeters)
+                .setMaxUpdateDelayMillis(options.maxDelayMs)
+                .build();
+        callback = new LocationCallback() {
+            @Override
+            public void onLocationResult(LocationResult result) {
+                onFixes(this, result.getLocations());
+            }
+        };
+        client.requestLocationUpdates(request, executor, callback)
+                .addOnFailureListener(e -> Log.e(TAG, "❌ Location stream failed to start: ", e));
+        Log.i(TAG, "✅ Location stream started, every " + options.intervalMs + " ms or "
+                + options.minDistanceMeters + " m, batched up to " + options.maxDelayMs + " ms");
+    }
+
+    // Stop updates and queue whatever is pending
+    synchronized void stop() {
+        if (callback == null) {
+            return;
+        }
+        client.removeLocationUpdates(callback);
+        callback = null;
+        flush();
+        anchor = null;
+        Log.i(TAG, "ℹ️ Location stream stopped");
+    }
+
+    synchronized boolean isRunning() {
+        return callback != null;
+    }
+
+    private synchronized void onFixes(LocationCallback from, List<Location> fixes) {
+        if (from != callback) {
+            return;
+        }
+        for (Location fix : fixes) {
+            FIXES.incrementAndGet();
+            if (fix.hasAccuracy() && fix.getAccuracy() > options.maxAccuracyMeters) {
+                continue;
+            }
+            if (pending.isEmpty()) {
+                pendingSince = System.currentTimeMillis();
+                scheduleFlush(from);
+            }
+            pending.add(fix);
+        }
+        if (pending.size() >= MAX_PENDING
+                || !pending.isEmpty() && System.currentTimeMillis() - pendingSince >= options.flushAfterMs) {
+            flush();
+        }
+    }
+
+    // Flush the window opened by the first pending fix once it is flushAfterMs old
+    private void scheduleFlush(LocationCallback from) {
+        flushTimer = executor.schedule(() -> onFlushDue(from), options.flushAfterMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onFlushDue(LocationCallback from) {
+        // A younger window was opened after this timer fired, and has its own timer
+        if (from != callback || pending.isEmpty() || System.currentTimeMillis() - pendingSince < options.flushAfterMs) {
+            return;
+        }
+        flush();
+    }
+
+    private void flush() {
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Location> track = new ArrayList<>(pending.size() + 1);
+        if (anchor != null) {
+            track.add(anchor);
+        }
+        track.addAll(pending);
+        int raw = pending.size();
+        pending.clear();
+
+        List<Location> kept = TrajectorySimplifier.simplify(track, options.minToleranceMeters);
+        if (anchor != null) {
+            // Already sent with the previous track
+            kept.remove(0);
+        }
+        anchor = track.get(track.size() - 1);
+        if (kept.isEmpty()) {
+            return;
+        }
+        KEPT.addAndGet(kept.size());
+        try {
+            enqueue(kept, raw);
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error queueing location track: ", e);
+        }
+    }
+
+    // {"deviceId", "platform", "data": {"track": {"points": [[lat, lng, accuracy, time], ...], ...}}, "timestamp"}
+    private void enqueue(List<Location> points, int rawCount) throws Exception {
+        if (deviceId == null) {
+            deviceId = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+        }
+        JsonStreamWriter w = JsonStreamWriter.local();
+        w.beginObject()
+                .name("deviceId").value(deviceId)
+                .name("platform").value("android")
+                .name("data");
+        int dataStart = w.size();
+        w.beginObject().name("track").beginObject()
+                .name("rawCount").value(rawCount)
+                .name("keptCount").value(points.size())
+                .name("points").beginArray();
+        for (Location p : points) {
+            w.beginArray()
+                    .value(p.getLatitude())
+                    .value(p.getLongitude())
+                    .value(p.hasAccuracy() ? p.getAccuracy() : -1)
+                    .value(p.getTime())
+                    .endArray();
+        }
+        w.endArray().endObject().endObject();
+        long hash = EventCoalescer.hash(w.buffer(), dataStart, w.size());
+        w.name("timestamp").value(isoFormat.format(new Date()));
+        w.endObject();
+        if (MySdk.enqueueRecord(context, w.toByteArray(), hash)) {
+            Log.i(TAG, "✅ Location track queued, " + points.size() + " of " + rawCount + " fixes kept");
+        }
+    }
+}
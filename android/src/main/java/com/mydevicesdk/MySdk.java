@@ -1,103 +1,264 @@
 package com.mydevicesdk;
 import android.util.Log;
-import android.os.AsyncTask;
-import android.util.Log;
-import android.provider.Settings;
 import android.content.Context;
 
 import org.json.JSONObject;
 
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Scanner;
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class MySdk {
-    private static String appId = null;
-    private static String token = null;
-    private static long tokenExpiry = 0;
-    private static String SERVER_BASE_URL = null;
+    private static volatile String appId = null;
+    private static volatile String SERVER_BASE_URL = null;
+
+    // Upload batching defaults, see configureUpload
+    private static int batchSize = 50;
+    private static long flushIntervalMs = 30000;
+    private static long maxQueueBytes = 2 * 1024 * 1024;
+
+    // In-memory dispatch queue between callers and the uploader thread, see configureBackpressure
+    private static int dispatchCapacity = 1024;
+    private static BackpressurePolicy backpressurePolicy = BackpressurePolicy.DROP_OLDEST;
+    private static long blockTimeoutMs = 100;
+    private static volatile EventUploader uploader = null;
+    // Payloads equal to one sent within this window (timestamps aside) are dropped, see configureDedup
+    private static final EventCoalescer coalescer = new EventCoalescer(2000);
+    private static volatile TokenManager tokenManager = null;
 
     // Initialize SDK
-    public static void init(String clientAppId, String baseUrl) {
+    public static synchronized void init(String clientAppId, String baseUrl) {
+        boolean changed = !equal(appId, clientAppId) || !equal(SERVER_BASE_URL, baseUrl);
         appId = clientAppId;
         SERVER_BASE_URL = baseUrl;
+        // A token is only valid for the app and server it was issued for
+        if (changed && tokenManager != null) {
+            tokenManager.shutdown();
+            tokenManager = null;
+        }
+    }
+
+    // Configure batching: events per request, max delay before a flush, and on-disk queue cap
+    public static synchronized void configureUpload(int maxBatchSize, long flushInterval, long maxBytes) {
+        batchSize = Math.max(1, maxBatchSize);
+        flushIntervalMs = Math.max(1000, flushInterval);
+        maxQueueBytes = Math.max(64 * 1024, maxBytes);
+        if (uploader != null) {
+            uploader.configure(batchSize, flushIntervalMs, maxQueueBytes);
+        }
+    }
+
+    // Configure what sendData does when events arrive faster than the uploader drains them.
+    // Capacity only applies before the first sendData call.
+    public static synchronized void configureBackpressure(BackpressurePolicy policy, int capacity, long blockTimeout) {
+        backpressurePolicy = policy != null ? policy : BackpressurePolicy.DROP_OLDEST;
+        dispatchCapacity = Math.max(16, capacity);
+        blockTimeoutMs = Math.max(0, blockTimeout);
+        if (uploader != null) {
+            uploader.setBackpressure(backpressurePolicy, blockTimeoutMs);
+        }
     }
 
-    // Send data method
+    // Send data method: the event is handed to the uploader thread and sent with the next batch
     public static void sendData(final Context context, final JSONObject payload) {
         if (appId == null || SERVER_BASE_URL == null) {
             Log.e("MySdk", "❌ SDK not initialized. Call MySdk.init(appId, baseUrl) first.");
             return;
         }
 
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... voids) {
-                try {
-                    // Get device ID
-                    String deviceId = Settings.Secure.getString(
-                        context.getContentResolver(),
-                        Settings.Secure.ANDROID_ID
-                    );
-
-                    // Fetch new token if needed
-                    long now = System.currentTimeMillis() / 1000;
-                    if (token == null || now >= tokenExpiry - 30) {
-                        URL url = new URL(SERVER_BASE_URL + "/get-token");
-                        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                        conn.setRequestMethod("POST");
-                        conn.setRequestProperty("Content-Type", "application/json");
-                        conn.setDoOutput(true);
-
-                        JSONObject body = new JSONObject();
-                        body.put("appId", appId);
-                        body.put("deviceId", deviceId);
-
-                        OutputStreamWriter out = new OutputStreamWriter(conn.getOutputStream());
-                        out.write(body.toString());
-                        out.flush();
-                        out.close();
-
-                        Scanner in = new Scanner(conn.getInputStream());
-                        StringBuilder sb = new StringBuilder();
-                        while (in.hasNext()) {
-                            sb.append(in.nextLine());
-                        }
-                        in.close();
-
-                        JSONObject response = new JSONObject(sb.toString());
-                        token = response.getString("token");
-
-                        String[] parts = token.split("\\.");
-                        String payloadStr = new String(android.util.Base64.decode(parts[1], android.util.Base64.URL_SAFE | android.util.Base64.NO_WRAP));
-                        JSONObject payloadJson = new JSONObject(payloadStr);
-                        tokenExpiry = payloadJson.getLong("exp");
-                    }
-
-                    // Send event data
-                    URL urlEvent = new URL(SERVER_BASE_URL + "/events");
-                    HttpURLConnection connEvent = (HttpURLConnection) urlEvent.openConnection();
-                    connEvent.setRequestMethod("POST");
-                    connEvent.setRequestProperty("Content-Type", "application/json");
-                    connEvent.setDoOutput(true);
-
-                    JSONObject sendBody = new JSONObject();
-                    sendBody.put("apiKey", token);
-                    sendBody.put("payload", payload);
-
-                    OutputStreamWriter outEvent = new OutputStreamWriter(connEvent.getOutputStream());
-                    outEvent.write(sendBody.toString());
-                    outEvent.flush();
-                    outEvent.close();
-
-                    Log.i("MySdk", "✅ Data sent, response code: " + connEvent.getResponseCode());
-
-                } catch (Exception e) {
-                    Log.e("MySdk", "❌ Error sending data: ", e);
-                }
-                return null;
+        if (coalescer.isDuplicate(payload)) {
+            Log.i("MySdk", "ℹ️ Duplicate event dropped");
+            return;
+        }
+
+        try {
+            byte[] record = JsonStreamWriter.local().toBytes(payload);
+            if (!getUploader(context).enqueue(record)) {
+                Log.w("MySdk", "⚠️ Dispatch queue full, event dropped");
             }
-        }.execute();
+        } catch (Exception e) {
+            Log.e("MySdk", "❌ Error queueing data: ", e);
+        }
+    }
+
+    // Queue a record encoded elsewhere (see ReadableEvents); contentHash is used to drop duplicates
+    static boolean enqueueRecord(Context context, byte[] record, long contentHash) throws java.io.IOException {
+        if (appId == null || SERVER_BASE_URL == null) {
+            Log.e("MySdk", "❌ SDK not initialized. Call MySdk.init(appId, baseUrl) first.");
+            return false;
+        }
+        if (coalescer.isDuplicateHash(contentHash)) {
+            Log.i("MySdk", "ℹ️ Duplicate event dropped");
+            return false;
+        }
+        return enqueueRecord(context, record);
+    }
+
+    // Queue a record encoded elsewhere as is, without the duplicate check (custom events)
+    static boolean enqueueRecord(Context context, byte[] record) throws java.io.IOException {
+        if (appId == null || SERVER_BASE_URL == null) {
+            Log.e("MySdk", "❌ SDK not initialized. Call MySdk.init(appId, baseUrl) first.");
+            return false;
+        }
+        if (!getUploader(context).enqueue(record)) {
+            Log.w("MySdk", "⚠️ Dispatch queue full, event dropped");
+            return false;
+        }
+        return true;
+    }
+
+    // Upload through WorkManager instead of the in-process timer: events are kept on disk and sent
+    // every periodMinutes (15 at least) once the constraints hold, retried with exponential backoff
+    public static void enableDeferredUploads(Context context, boolean requireUnmetered, boolean requireCharging,
+                                             boolean requireBatteryNotLow, long periodMinutes) {
+        if (appId == null || SERVER_BASE_URL == null) {
+            Log.e("MySdk", "❌ SDK not initialized. Call MySdk.init(appId, baseUrl) first.");
+            return;
+        }
+        try {
+            UploadScheduler.enable(context, appId, SERVER_BASE_URL, requireUnmetered, requireCharging,
+                    requireBatteryNotLow, periodMinutes);
+            getUploader(context).setDeferred(true);
+        } catch (Exception e) {
+            Log.e("MySdk", "❌ Error scheduling uploads: ", e);
+        }
+    }
+
+    // Back to uploading from the uploader thread on the flush interval
+    public static void disableDeferredUploads(Context context) {
+        try {
+            UploadScheduler.disable(context);
+            getUploader(context).setDeferred(false);
+        } catch (Exception e) {
+            Log.e("MySdk", "❌ Error cancelling scheduled uploads: ", e);
+        }
+    }
+
+    // Drop events identical to one sent within windowMs, ignoring timestamp fields; 0 turns it off
+    public static void configureDedup(long windowMs) {
+        coalescer.setWindowMs(Math.max(0, windowMs));
+    }
+
+    // Events dropped as duplicates since start
+    public static long getDuplicateEventCount() {
+        return coalescer.duplicateCount();
+    }
+
+    // Batches smaller than thresholdBytes are uploaded uncompressed; larger ones are gzipped,
+    // or deflated with the snapshot dictionary once the server accepts it (from a quarter of the threshold)
+    public static void configureCompression(long thresholdBytes) {
+        HttpTransport.setCompressionThreshold(Math.max(0, thresholdBytes));
+    }
+
+    // Allow the compact binary batch format when the server advertises support (JSON otherwise)
+    public static void setBinaryUploads(boolean enabled) {
+        HttpTransport.setBinaryEnabled(enabled);
+    }
+
+    // Events waiting in memory for the uploader thread
+    public static int getDispatchQueueDepth() {
+        EventUploader current = uploader;
+        return current != null ? current.dispatchDepth() : 0;
+    }
+
+    // Events rejected or evicted by the backpressure policy since start
+    public static long getDroppedEventCount() {
+        EventUploader current = uploader;
+        return current != null ? current.droppedEvents() : 0;
+    }
+
+    // Events superseded under the COALESCE policy since start
+    public static long getCoalescedEventCount() {
+        EventUploader current = uploader;
+        return current != null ? current.coalescedEvents() : 0;
+    }
+
+    // Counters, latency histograms and queue gauges of the native SDK
+    public static Map<String, Object> getMetrics(Context context) {
+        Map<String, Object> metrics = SdkMetrics.snapshot();
+        Map<String, Object> queue = new TreeMap<>();
+        EventUploader current = uploader;
+        if (current != null) {
+            queue.put("dispatchDepth", current.dispatchDepth());
+            queue.put("queuedEvents", current.queuedEvents());
+            queue.put("droppedEvents", current.droppedEvents());
+            queue.put("coalescedEvents", current.coalescedEvents());
+            queue.put("lostEvents", current.lostEvents());
+            queue.put("uploadBreaker", current.breakerState().name());
+        }
+        queue.put("duplicateEvents", coalescer.duplicateCount());
+        metrics.put("queue", queue);
+        return metrics;
+    }
+
+    // The last few thousand internal trace events (collection ticks, token refreshes, HTTP phases,
+    // enqueues, uploads, retries) as Chrome trace JSON, for Perfetto or chrome://tracing
+    public static String dumpTrace() throws Exception {
+        return TraceRecorder.exportJson();
+    }
+
+    // Upload whatever is queued now instead of waiting for the flush interval.
+    // With deferred uploads this waits for the scheduler's constraints.
+    public static void flush(Context context) {
+        try {
+            EventUploader current = getUploader(context);
+            if (current.isDeferred()) {
+                UploadScheduler.requestFlush(context);
+            } else {
+                current.requestFlush();
+            }
+        } catch (Exception e) {
+            Log.e("MySdk", "❌ Error flushing data: ", e);
+        }
+    }
+
+    static EventUploader getUploader(Context context) throws java.io.IOException {
+        EventUploader current = uploader;
+        if (current != null) {
+            return current;
+        }
+        synchronized (MySdk.class) {
+            if (uploader == null) {
+                File queueFile = new File(context.getApplicationContext().getFilesDir(), "mysdk/events.seg");
+                uploader = new EventUploader(queueFile, new BatchSender.Http(context), batchSize, flushIntervalMs,
+                        maxQueueBytes, dispatchCapacity, backpressurePolicy, blockTimeoutMs);
+                uploader.setDeferred(UploadScheduler.isEnabled(context));
+            }
+            return uploader;
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    static EventCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    static boolean isInitialized() {
+        return appId != null && SERVER_BASE_URL != null;
+    }
+
+    static String getBaseUrl() {
+        return SERVER_BASE_URL;
+    }
+
+    // Valid API token, refreshed at most once across concurrent callers
+    static String ensureToken(Context context) throws Exception {
+        return getTokenManager(context).getToken();
+    }
+
+    static TokenManager getTokenManager(Context context) {
+        TokenManager current = tokenManager;
+        if (current != null) {
+            return current;
+        }
+        synchronized (MySdk.class) {
+            if (tokenManager == null) {
+                tokenManager = new TokenManager(context, SERVER_BASE_URL, appId);
+            }
+            return tokenManager;
+        }
     }
 }
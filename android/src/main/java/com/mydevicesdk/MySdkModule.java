@@ -2,25 +2,10 @@ package com.mydevicesdk;
 
 import android.util.Log;
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.pm.PackageManager;
 import android.location.Location;
-import android.net.ConnectivityManager;
-import android.net.Network;
-import android.net.NetworkCapabilities;
-import android.net.NetworkInfo;
-import android.net.wifi.WifiInfo;
-import android.net.wifi.WifiManager;
-import android.os.Build;
-import android.provider.Settings;
-import android.telephony.TelephonyManager;
-import android.telephony.CellInfo;
-import android.telephony.CellInfoGsm;
-import android.telephony.CellInfoLte;
-import android.telephony.CellInfoWcdma;
-import android.telephony.SubscriptionManager;
-import android.telephony.SubscriptionInfo;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.core.app.ActivityCompat;
 
@@ -28,33 +13,43 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
-import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.facebook.react.modules.core.PermissionAwareActivity;
 
-import com.google.android.gms.ads.identifier.AdvertisingIdClient;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
-
-import java.net.NetworkInterface;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import android.app.Activity;
 import android.content.Intent;
 import androidx.annotation.NonNull;
 import com.facebook.react.bridge.ActivityEventListener;
 
-public class MySdkModule extends ReactContextBaseJavaModule implements ActivityEventListener {
+public class MySdkModule extends ReactContextBaseJavaModule implements ActivityEventListener, LifecycleEventListener {
     private final ReactApplicationContext reactContext;
-    private Promise permissionPromise;
+    // getLocation calls waiting for the permission prompt, guarded by itself
+    private final List<Promise> permissionPromises = new ArrayList<>();
+    private final LocationEngine locationEngine;
+    private volatile LocationEngine.Options locationOptions = new LocationEngine.Options();
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 12345;
+    private static final String METRICS_EVENT = "MySdkMetrics";
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Runnable metricsEmitter;
+    private final ReadableEvents events;
 
     public MySdkModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
+        this.locationEngine = LocationEngine.get(reactContext);
+        this.events = new ReadableEvents(reactContext);
         reactContext.addActivityEventListener(this);
+        reactContext.addLifecycleEventListener(this);
+        AdIdProvider.get(reactContext).warm();
     }
 
     @Override
@@ -64,18 +59,33 @@ public class MySdkModule extends ReactContextBaseJavaModule implements ActivityE
 
     @ReactMethod
     public void getAdId(Promise promise) {
-        new Thread(() -> {
-            try {
-                AdvertisingIdClient.Info adInfo = AdvertisingIdClient.getAdvertisingIdInfo(reactContext);
-                if (adInfo != null) {
-                    promise.resolve(adInfo.getId());
-                } else {
-                    promise.reject("NO_ADID", "Ad ID is null");
-                }
-            } catch (Exception e) {
-                promise.reject("AD_ID_ERROR", "Failed to get Ad ID", e);
+        AdIdProvider.get(reactContext).request((info, error) -> {
+            if (info != null && info.id != null) {
+                promise.resolve(info.id);
+            } else if (error != null) {
+                promise.reject("AD_ID_ERROR", "Failed to get Ad ID", error);
+            } else {
+                promise.reject("NO_ADID", "Ad ID is null");
             }
-        }).start();
+        });
+    }
+
+    // Ad ID together with the user's limit-ad-tracking choice
+    @ReactMethod
+    public void getAdInfo(Promise promise) {
+        AdIdProvider.get(reactContext).request((info, error) -> {
+            if (info != null) {
+                WritableMap map = Arguments.createMap();
+                map.putString("adId", info.id);
+                map.putBoolean("limitAdTracking", info.limitAdTracking);
+                map.putDouble("fetchedAt", info.fetchedAt);
+                promise.resolve(map);
+            } else if (error != null) {
+                promise.reject("AD_ID_ERROR", "Failed to get Ad ID", error);
+            } else {
+                promise.reject("NO_ADID", "Ad ID is null");
+            }
+        });
     }
 
     @ReactMethod
@@ -85,340 +95,456 @@ public class MySdkModule extends ReactContextBaseJavaModule implements ActivityE
             promise.reject("NO_ACTIVITY", "No activity");
             return;
         }
-        if (ActivityCompat.checkSelfPermission(reactContext, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
-            ActivityCompat.checkSelfPermission(reactContext, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            permissionPromise = promise;
-            ActivityCompat.requestPermissions(currentActivity, new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, LOCATION_PERMISSION_REQUEST_CODE);
+        if (!hasLocationPermission()) {
+            requestLocationPermission(currentActivity, promise);
             return;
         }
-        try {
-            FusedLocationProviderClient fusedLocationClient = LocationServices
-                    .getFusedLocationProviderClient(reactContext);
-
-            fusedLocationClient.getCurrentLocation(
-                    Priority.PRIORITY_HIGH_ACCURACY,
-                    null).addOnSuccessListener(location -> {
-                        if (location != null && promise != null) {
-                            try {
-                                WritableMap map = Arguments.createMap();
-                                map.putDouble("lat", location.getLatitude());
-                                map.putDouble("lng", location.getLongitude());
-                                map.putDouble("accuracy", location.getAccuracy());
-                                map.putDouble("altitude", location.getAltitude());
-                                map.putDouble("speed", location.getSpeed());
-                                map.putDouble("bearing", location.getBearing());
-                                map.putString("provider", location.getProvider());
-                                map.putDouble("timestamp", location.getTime());
-                                promise.resolve(map);
-                            } catch (Exception e) {
-                                promise.reject("LOCATION_ERROR", "Error building location map", e);
-                            }
-                        } else {
-                            if (promise != null) {
-                                promise.reject("LOCATION_ERROR", "Unable to retrieve location");
-                            }
-                        }
-                    }).addOnFailureListener(e -> {
-                        if (promise != null) {
-                            promise.reject("LOCATION_ERROR", e.getMessage(), e);
-                        }
-                    });
+        requestLocation(promise);
+    }
 
-        } catch (Exception e) {
-            if (promise != null) {
-                promise.reject("LOCATION_ERROR", e.getMessage(), e);
+    private void requestLocation(Promise promise) {
+        locationEngine.request(locationOptions, new LocationEngine.Callback() {
+            @Override
+            public void onLocation(Location location) {
+                try {
+                    promise.resolve(toLocationMap(location));
+                } catch (Exception e) {
+                    promise.reject("LOCATION_ERROR", "Error building location map", e);
+                }
             }
-        }
+
+            @Override
+            public void onError(String code, String message, Exception e) {
+                promise.reject(code, message, e);
+            }
+        });
     }
 
-    @Override
-    public void onNewIntent(Intent intent) {}
+    // Serving and neighbour cells. Scans happen at most every minIntervalMs (60s by default,
+    // 10s at least); calls in between get the last scan. Needs fine location.
+    @ReactMethod
+    public void getCellInfo(Promise promise) {
+        CellInfoCollector.get(reactContext).request(snapshot -> {
+            try {
+                WritableMap map = Arguments.createMap();
+                map.putDouble("scannedAt", snapshot.scannedAt);
+                map.putInt("changedCount", snapshot.changedCount());
+                WritableArray cells = Arguments.createArray();
+                for (int i = 0; i < snapshot.size; i++) {
+                    WritableMap cell = Arguments.createMap();
+                    cell.putString("key", snapshot.key(i));
+                    cell.putBoolean("registered", snapshot.registered[i]);
+                    cell.putBoolean("changed", snapshot.changed[i]);
+                    putCellValue(cell, "mcc", snapshot.mcc[i]);
+                    putCellValue(cell, "mnc", snapshot.mnc[i]);
+                    putCellValue(cell, "area", snapshot.area[i]);
+                    cell.putDouble("cid", snapshot.cid[i]);
+                    putCellValue(cell, "channel", snapshot.channel[i]);
+                    putCellValue(cell, "pci", snapshot.pci[i]);
+                    putCellValue(cell, "dbm", snapshot.dbm[i]);
+                    cells.pushMap(cell);
+                }
+                map.putArray("cells", cells);
+                promise.resolve(map);
+            } catch (Exception e) {
+                promise.reject("CELL_INFO_ERROR", "Failed to read cell info", e);
+            }
+        });
+    }
 
-    @Override
-    public void onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
-        // No-op
+    @ReactMethod
+    public void configureCellInfo(ReadableMap config) {
+        if (config.hasKey("minIntervalMs")) {
+            CellInfoCollector.get(reactContext).setMinIntervalMs((long) config.getDouble("minIntervalMs"));
+        }
     }
 
-    @SuppressLint("MissingPermission")
+    private static void putCellValue(WritableMap map, String key, int value) {
+        if (value == Integer.MAX_VALUE) {
+            map.putNull(key);
+        } else {
+            map.putInt(key, value);
+        }
+    }
+
+    // Nearby access points: {updatedAt, aps: {bssid: [ssid, level, frequency]}}, null without
+    // fine location. Starts a Wi-Fi scan only when the cache is stale and the OS budget allows it.
+    // getScanResults and startScan are binder calls, so they run on the collector pool.
     @ReactMethod
-    public void getNetworkInfo(Promise promise) {
+    public void getWifiScan(Promise promise) {
+        final WifiScanCollector collector = WifiScanCollector.get(reactContext);
         try {
-            WritableMap map = Arguments.createMap();
-
-            // Get all network managers
-            TelephonyManager telephonyManager = (TelephonyManager) reactContext
-                    .getSystemService(Context.TELEPHONY_SERVICE);
-            ConnectivityManager connectivityManager = (ConnectivityManager) reactContext
-                    .getSystemService(Context.CONNECTIVITY_SERVICE);
-            WifiManager wifiManager = (WifiManager) reactContext.getApplicationContext()
-                    .getSystemService(Context.WIFI_SERVICE);
-
-            // SIM & Telephony Info
-            if (telephonyManager != null) {
+            CollectorExecutor.execute(() -> {
                 try {
-                    map.putString("simOperatorName", telephonyManager.getSimOperatorName());
-                    map.putString("simCountryIso", telephonyManager.getSimCountryIso());
-                    map.putString("networkOperator", telephonyManager.getNetworkOperator());
-                    map.putString("networkOperatorName", telephonyManager.getNetworkOperatorName());
-                    map.putBoolean("isNetworkRoaming", telephonyManager.isNetworkRoaming());
-                    map.putInt("networkType", telephonyManager.getNetworkType());
-                    map.putInt("phoneType", telephonyManager.getPhoneType());
-                    map.putInt("dataActivity", telephonyManager.getDataActivity());
-                    map.putInt("dataState", telephonyManager.getDataState());
-
-                    // Additional SIM info (requires READ_PHONE_STATE permission)
-                    if (ActivityCompat.checkSelfPermission(reactContext,
-                            Manifest.permission.READ_PHONE_STATE) == PackageManager.PERMISSION_GRANTED) {
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                            map.putString("simSerialNumber", telephonyManager.getSimSerialNumber());
-                        }
-                        map.putInt("simState", telephonyManager.getSimState());
-
-                        // Network class calculation
-                        int networkType = telephonyManager.getNetworkType();
-                        map.putString("networkClass", getNetworkClass(networkType));
-                        map.putString("androidNetworkType", getNetworkTypeName(networkType));
-                    }
-
-                    // Multiple SIM support
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
-                        SubscriptionManager subscriptionManager = SubscriptionManager.from(reactContext);
-                        if (ActivityCompat.checkSelfPermission(reactContext,
-                                Manifest.permission.READ_PHONE_STATE) == PackageManager.PERMISSION_GRANTED) {
-                            List<SubscriptionInfo> subscriptionInfos = subscriptionManager
-                                    .getActiveSubscriptionInfoList();
-                            if (subscriptionInfos != null && !subscriptionInfos.isEmpty()) {
-                                WritableArray simCards = Arguments.createArray();
-                                for (SubscriptionInfo info : subscriptionInfos) {
-                                    WritableMap simCard = Arguments.createMap();
-                                    simCard.putString("carrierName", info.getCarrierName().toString());
-                                    simCard.putString("displayName", info.getDisplayName().toString());
-                                    simCard.putInt("simSlotIndex", info.getSimSlotIndex());
-                                    simCard.putString("countryIso", info.getCountryIso());
-                                    simCards.pushMap(simCard);
-                                }
-                                map.putArray("simCards", simCards);
-                            }
-                        }
-                    }
-
+                    Map<String, Object> snapshot = collector.snapshot(true);
+                    promise.resolve(snapshot != null ? Arguments.makeNativeMap(snapshot) : null);
                 } catch (Exception e) {
-                    map.putString("telephonyError", e.getMessage());
+                    promise.reject("WIFI_SCAN_ERROR", "Failed to read Wi-Fi scan results", e);
                 }
-            }
+            });
+        } catch (Exception e) {
+            promise.reject("WIFI_SCAN_ERROR", "Failed to read Wi-Fi scan results", e);
+        }
+    }
 
-            // WiFi Information
-            if (wifiManager != null) {
-                try {
-                    WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-                    if (wifiInfo != null) {
-                        map.putString("ssid", wifiInfo.getSSID());
-                        map.putString("bssid", wifiInfo.getBSSID());
-                        map.putInt("linkSpeed", wifiInfo.getLinkSpeed());
-                        map.putInt("frequency", wifiInfo.getFrequency());
-                        map.putInt("rssi", wifiInfo.getRssi());
-                        map.putInt("networkId", wifiInfo.getNetworkId());
-
-                        // Calculate signal strength percentage
-                        int signalLevel = WifiManager.calculateSignalLevel(wifiInfo.getRssi(), 5);
-                        map.putInt("signalLevel", signalLevel);
-                        map.putInt("strength", (signalLevel * 100) / 4); // Convert to percentage
-
-                        // Additional WiFi info for newer Android versions
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                            map.putInt("rxLinkSpeed", wifiInfo.getRxLinkSpeedMbps());
-                            map.putInt("txLinkSpeed", wifiInfo.getTxLinkSpeedMbps());
-                        }
-                    }
+    // maxAgeMs: drop access points not seen for this long; minScanIntervalMs: never scan more often
+    @ReactMethod
+    public void configureWifiScan(ReadableMap config) {
+        long maxAgeMs = config.hasKey("maxAgeMs") ? (long) config.getDouble("maxAgeMs") : 0;
+        long minScanIntervalMs = config.hasKey("minScanIntervalMs") ? (long) config.getDouble("minScanIntervalMs") : 0;
+        WifiScanCollector.get(reactContext).configure(maxAgeMs, minScanIntervalMs);
+    }
 
-                    map.putBoolean("isWifiEnabled", wifiManager.isWifiEnabled());
-                } catch (Exception e) {
-                    map.putString("wifiError", e.getMessage());
-                }
+    // Stream location as simplified tracks: appId, baseUrl, intervalMs, minDistanceMeters, maxDelayMs,
+    // highAccuracy, maxAccuracyMeters, minToleranceMeters, flushAfterMs. Needs a location permission.
+    @ReactMethod
+    public void startLocationStream(ReadableMap config, Promise promise) {
+        if (!hasLocationPermission()) {
+            promise.reject("PERMISSION_DENIED", "Location permission not granted");
+            return;
+        }
+        try {
+            MySdk.init(config.getString("appId"), config.getString("baseUrl"));
+            LocationStream.Options options = new LocationStream.Options();
+            if (config.hasKey("intervalMs")) {
+                options.intervalMs = (long) config.getDouble("intervalMs");
             }
-
-            // Network Connectivity Information
-            if (connectivityManager != null) {
-                try {
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                        Network activeNetwork = connectivityManager.getActiveNetwork();
-                        if (activeNetwork != null) {
-                            NetworkCapabilities capabilities = connectivityManager
-                                    .getNetworkCapabilities(activeNetwork);
-                            if (capabilities != null) {
-                                map.putBoolean("hasWifi",
-                                        capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI));
-                                map.putBoolean("hasCellular",
-                                        capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR));
-                                map.putBoolean("hasEthernet",
-                                        capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET));
-                                map.putBoolean("hasVpn", capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN));
-
-                                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                                    map.putBoolean("hasLowPan",
-                                            capabilities.hasTransport(NetworkCapabilities.TRANSPORT_LOWPAN));
-                                }
-
-                                map.putBoolean("isMetered",
-                                        !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
-                                map.putBoolean("isValidated",
-                                        capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED));
-
-                                // Bandwidth info
-                                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                                    map.putInt("downstreamBandwidth", capabilities.getLinkDownstreamBandwidthKbps());
-                                    map.putInt("upstreamBandwidth", capabilities.getLinkUpstreamBandwidthKbps());
-                                }
-                            }
-                        }
-                    } else {
-                        // Fallback for older Android versions
-                        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-                        if (activeNetworkInfo != null) {
-                            map.putString("networkTypeName", activeNetworkInfo.getTypeName());
-                            map.putString("networkSubtypeName", activeNetworkInfo.getSubtypeName());
-                            map.putBoolean("isConnected", activeNetworkInfo.isConnected());
-                            map.putBoolean("isAvailable", activeNetworkInfo.isAvailable());
-                            map.putBoolean("isRoaming", activeNetworkInfo.isRoaming());
-                        }
-                    }
-                } catch (Exception e) {
-                    map.putString("connectivityError", e.getMessage());
-                }
+            if (config.hasKey("minDistanceMeters")) {
+                options.minDistanceMeters = (float) config.getDouble("minDistanceMeters");
+            }
+            if (config.hasKey("maxDelayMs")) {
+                options.maxDelayMs = (long) config.getDouble("maxDelayMs");
+            }
+            if (config.hasKey("highAccuracy")) {
+                options.highAccuracy = config.getBoolean("highAccuracy");
             }
+            if (config.hasKey("maxAccuracyMeters")) {
+                options.maxAccuracyMeters = (float) config.getDouble("maxAccuracyMeters");
+            }
+            if (config.hasKey("minToleranceMeters")) {
+                options.minToleranceMeters = (float) config.getDouble("minToleranceMeters");
+            }
+            if (config.hasKey("flushAfterMs")) {
+                options.flushAfterMs = (long) config.getDouble("flushAfterMs");
+            }
+            LocationStream.get(reactContext).start(options);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("LOCATION_STREAM_ERROR", "Failed to start location stream", e);
+        }
+    }
 
-            // MAC Address (various methods for different Android versions)
-            String macAddress = getMacAddress();
-            map.putString("macAddress", macAddress);
+    @ReactMethod
+    public void stopLocationStream() {
+        LocationStream.get(reactContext).stop();
+    }
 
-            // Additional device identifiers
-            try {
-                String androidId = Settings.Secure.getString(reactContext.getContentResolver(),
-                        Settings.Secure.ANDROID_ID);
-                map.putString("androidId", androidId);
-            } catch (Exception e) {
-                map.putString("androidIdError", e.getMessage());
+    // Tune getLocation: maxAgeMs, desiredAccuracyMeters, timeoutMs, allowHighAccuracy
+    @ReactMethod
+    public void configureLocation(ReadableMap config) {
+        LocationEngine.Options options = new LocationEngine.Options();
+        if (config.hasKey("maxAgeMs")) {
+            options.maxAgeMs = (long) config.getDouble("maxAgeMs");
+        }
+        if (config.hasKey("desiredAccuracyMeters")) {
+            options.desiredAccuracyMeters = (float) config.getDouble("desiredAccuracyMeters");
+        }
+        if (config.hasKey("timeoutMs")) {
+            options.timeoutMs = Math.max(1000, (long) config.getDouble("timeoutMs"));
+        }
+        if (config.hasKey("allowHighAccuracy")) {
+            options.allowHighAccuracy = config.getBoolean("allowHighAccuracy");
+        }
+        locationOptions = options;
+    }
+
+    // Hand the periodic send loop to the native CollectionEngine:
+    // appId, baseUrl, intervalMs, minIntervalMs, maxIntervalMs, adaptive, collectLocation,
+    // deltaEncoding, keyframeEvery, foldWindowMs, dedupWindowMs, device (static fields), contact
+    @ReactMethod
+    public void startCollection(ReadableMap config, Promise promise) {
+        try {
+            MySdk.init(config.getString("appId"), config.getString("baseUrl"));
+            CollectionEngine.Config engineConfig = new CollectionEngine.Config();
+            if (config.hasKey("intervalMs")) {
+                engineConfig.intervalMs = (long) config.getDouble("intervalMs");
+            }
+            if (config.hasKey("collectLocation")) {
+                engineConfig.collectLocation = config.getBoolean("collectLocation");
+            }
+            if (config.hasKey("collectCells")) {
+                engineConfig.collectCells = config.getBoolean("collectCells");
+            }
+            if (config.hasKey("cellIntervalMs")) {
+                engineConfig.cellIntervalMs = (long) config.getDouble("cellIntervalMs");
+            }
+            if (config.hasKey("collectWifiScan")) {
+                engineConfig.collectWifiScan = config.getBoolean("collectWifiScan");
+            }
+            if (config.hasKey("deltaEncoding")) {
+                engineConfig.deltaEncoding = config.getBoolean("deltaEncoding");
+            }
+            if (config.hasKey("keyframeEvery")) {
+                engineConfig.keyframeEvery = config.getInt("keyframeEvery");
+            }
+            if (config.hasKey("adaptive")) {
+                engineConfig.adaptive = config.getBoolean("adaptive");
+            }
+            if (config.hasKey("minIntervalMs")) {
+                engineConfig.minIntervalMs = (long) config.getDouble("minIntervalMs");
             }
+            if (config.hasKey("maxIntervalMs")) {
+                engineConfig.maxIntervalMs = (long) config.getDouble("maxIntervalMs");
+            }
+            if (config.hasKey("foldWindowMs")) {
+                engineConfig.foldWindowMs = (long) config.getDouble("foldWindowMs");
+            }
+            if (config.hasKey("dedupWindowMs")) {
+                MySdk.configureDedup((long) config.getDouble("dedupWindowMs"));
+            }
+            if (config.hasKey("device") && !config.isNull("device")) {
+                engineConfig.device = config.getMap("device").toHashMap();
+            }
+            if (config.hasKey("contact") && !config.isNull("contact")) {
+                engineConfig.contact = config.getMap("contact").toHashMap();
+            }
+            CollectionEngine.get(reactContext).start(engineConfig);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("COLLECTION_ERROR", "Failed to start collection", e);
+        }
+    }
+
+    @ReactMethod
+    public void stopCollection() {
+        CollectionEngine.get(reactContext).stop();
+    }
 
-            promise.resolve(map);
+    // Collect and queue one sample now, outside the schedule, with extra data fields.
+    // Bursts of calls are folded into a single sample with the extras merged.
+    @ReactMethod
+    public void collectNow(ReadableMap extra) {
+        CollectionEngine.get(reactContext).sampleNow(extra != null ? extra.toHashMap() : null);
+    }
+
+    // Queue a custom event as is; the map is streamed into the record without intermediate copies
+    @ReactMethod
+    public void enqueueEvent(ReadableMap event) {
+        try {
+            events.enqueue(event);
         } catch (Exception e) {
-            promise.reject("NETWORK_ERROR", "Failed to get network info", e);
+            Log.e("MySdk", "❌ Error queueing event: ", e);
         }
     }
 
-    private String getMacAddress() {
+    @ReactMethod
+    public void isCollecting(Promise promise) {
+        promise.resolve(CollectionEngine.get(reactContext).isRunning());
+    }
+
+    // Current sampling and upload interval, and why (for debugging the adaptive rate)
+    @ReactMethod
+    public void getSamplingState(Promise promise) {
+        CollectionEngine engine = CollectionEngine.get(reactContext);
+        CollectionEngine.Config config = engine.currentConfig();
+        AdaptiveRate.Decision rate = engine.currentRate();
+        WritableMap map = Arguments.createMap();
+        map.putBoolean("running", engine.isRunning());
+        map.putBoolean("adaptive", config != null && config.adaptive);
+        if (rate != null) {
+            map.putDouble("intervalMs", rate.intervalMs);
+            map.putDouble("factor", rate.factor);
+            map.putString("reason", rate.reason);
+        } else if (config != null) {
+            map.putDouble("intervalMs", config.intervalMs);
+            map.putString("reason", config.adaptive ? "no sample yet" : "fixed");
+        }
         try {
-            // Method 1: Try WiFi Manager (works on older Android versions)
-            WifiManager wifiManager = (WifiManager) reactContext.getApplicationContext()
-                    .getSystemService(Context.WIFI_SERVICE);
-            if (wifiManager != null) {
-                WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-                if (wifiInfo != null && wifiInfo.getMacAddress() != null
-                        && !wifiInfo.getMacAddress().equals("02:00:00:00:00:00")) {
-                    return wifiInfo.getMacAddress();
-                }
-            }
+            map.putDouble("uploadIntervalMs", MySdk.getUploader(reactContext).effectiveFlushIntervalMs());
         } catch (Exception e) {
-            // Continue to next method
+            map.putNull("uploadIntervalMs");
         }
+        promise.resolve(map);
+    }
 
+    // Native SDK metrics: counters, latency histograms (ms) and queue gauges
+    @ReactMethod
+    public void getMetrics(Promise promise) {
         try {
-            // Method 2: Try NetworkInterface (works on some devices)
-            List<NetworkInterface> interfaces = Collections.list(NetworkInterface.getNetworkInterfaces());
-            for (NetworkInterface networkInterface : interfaces) {
-                if (!networkInterface.getName().equalsIgnoreCase("wlan0"))
-                    continue;
-
-                byte[] mac = networkInterface.getHardwareAddress();
-                if (mac == null)
-                    continue;
-
-                StringBuilder buf = new StringBuilder();
-                for (byte aMac : mac) {
-                    buf.append(String.format("%02X:", aMac));
-                }
-                if (buf.length() > 0) {
-                    buf.deleteCharAt(buf.length() - 1);
+            promise.resolve(Arguments.makeNativeMap(MySdk.getMetrics(reactContext)));
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", "Failed to read metrics", e);
+        }
+    }
+
+    // Flight recorder contents as Chrome trace JSON (a string); open it in ui.perfetto.dev
+    @ReactMethod
+    public void dumpTrace(Promise promise) {
+        try {
+            promise.resolve(MySdk.dumpTrace());
+        } catch (Exception e) {
+            promise.reject("TRACE_ERROR", "Failed to export trace", e);
+        }
+    }
+
+    // Emit the metrics as a "MySdkMetrics" event every intervalMs until stopped
+    @ReactMethod
+    public void startMetricsEvents(double intervalMs) {
+        stopMetricsEvents();
+        long interval = Math.max(5000, (long) intervalMs);
+        metricsEmitter = new Runnable() {
+            @Override
+            public void run() {
+                if (reactContext.hasActiveReactInstance()) {
+                    reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                            .emit(METRICS_EVENT, Arguments.makeNativeMap(MySdk.getMetrics(reactContext)));
                 }
-                return buf.toString();
+                mainHandler.postDelayed(this, interval);
             }
+        };
+        mainHandler.postDelayed(metricsEmitter, interval);
+    }
+
+    @ReactMethod
+    public void stopMetricsEvents() {
+        Runnable current = metricsEmitter;
+        if (current != null) {
+            mainHandler.removeCallbacks(current);
+            metricsEmitter = null;
+        }
+    }
+
+    // Required by NativeEventEmitter
+    @ReactMethod
+    public void addListener(String eventName) {}
+
+    @ReactMethod
+    public void removeListeners(double count) {}
+
+    // Move uploads to WorkManager: enabled, requireUnmetered, requireCharging, requireBatteryNotLow, periodMinutes
+    @ReactMethod
+    public void configureUploadSchedule(ReadableMap config) {
+        if (config.hasKey("enabled") && !config.getBoolean("enabled")) {
+            MySdk.disableDeferredUploads(reactContext);
+            return;
+        }
+        MySdk.enableDeferredUploads(reactContext,
+                !config.hasKey("requireUnmetered") || config.getBoolean("requireUnmetered"),
+                config.hasKey("requireCharging") && config.getBoolean("requireCharging"),
+                !config.hasKey("requireBatteryNotLow") || config.getBoolean("requireBatteryNotLow"),
+                config.hasKey("periodMinutes") ? (long) config.getDouble("periodMinutes") : 15);
+    }
+
+    private static WritableMap toLocationMap(Location location) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("lat", location.getLatitude());
+        map.putDouble("lng", location.getLongitude());
+        map.putDouble("accuracy", location.getAccuracy());
+        map.putDouble("altitude", location.getAltitude());
+        map.putDouble("speed", location.getSpeed());
+        map.putDouble("bearing", location.getBearing());
+        map.putString("provider", location.getProvider());
+        map.putDouble("timestamp", location.getTime());
+        return map;
+    }
+
+    @Override
+    public void onNewIntent(Intent intent) {}
+
+    @Override
+    public void onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
+        // No-op
+    }
+
+    // Served from the process-wide snapshot. A rebuild runs on the collector pool,
+    // so the bridge thread never waits on system services.
+    @ReactMethod
+    public void getNetworkInfo(Promise promise) {
+        final NetworkInfoCache cache = NetworkInfoCache.get(reactContext);
+        Map<String, Object> cached = cache.cached();
+        if (cached != null) {
+            promise.resolve(Arguments.makeNativeMap(cached));
+            return;
+        }
+        try {
+            CollectorExecutor.execute(() -> {
+                try {
+                    promise.resolve(Arguments.makeNativeMap(cache.snapshot()));
+                } catch (Exception e) {
+                    promise.reject("NETWORK_ERROR", "Failed to get network info", e);
+                }
+            });
         } catch (Exception e) {
-            // Continue to fallback
+            promise.reject("NETWORK_ERROR", "Failed to get network info", e);
         }
+    }
+
+    private boolean hasLocationPermission() {
+        return locationEngine.hasPermission();
+    }
 
-        // Fallback for Android 10+
-        return "unavailable_android_10+";
-    }
-
-    private String getNetworkClass(int networkType) {
-        switch (networkType) {
-            case TelephonyManager.NETWORK_TYPE_GPRS:
-            case TelephonyManager.NETWORK_TYPE_EDGE:
-            case TelephonyManager.NETWORK_TYPE_CDMA:
-            case TelephonyManager.NETWORK_TYPE_1xRTT:
-            case TelephonyManager.NETWORK_TYPE_IDEN:
-                return "2G";
-            case TelephonyManager.NETWORK_TYPE_UMTS:
-            case TelephonyManager.NETWORK_TYPE_EVDO_0:
-            case TelephonyManager.NETWORK_TYPE_EVDO_A:
-            case TelephonyManager.NETWORK_TYPE_HSDPA:
-            case TelephonyManager.NETWORK_TYPE_HSUPA:
-            case TelephonyManager.NETWORK_TYPE_HSPA:
-            case TelephonyManager.NETWORK_TYPE_EVDO_B:
-            case TelephonyManager.NETWORK_TYPE_EHRPD:
-            case TelephonyManager.NETWORK_TYPE_HSPAP:
-                return "3G";
-            case TelephonyManager.NETWORK_TYPE_LTE:
-                return "4G";
-            case TelephonyManager.NETWORK_TYPE_NR:
-                return "5G";
-            default:
-                return "Unknown";
+    // Queue the promise and show the prompt once, however many calls arrive while it is up
+    private void requestLocationPermission(Activity activity, Promise promise) {
+        synchronized (permissionPromises) {
+            permissionPromises.add(promise);
+            if (permissionPromises.size() > 1) {
+                return;
+            }
+        }
+        String[] permissions = {Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION};
+        if (activity instanceof PermissionAwareActivity) {
+            ((PermissionAwareActivity) activity).requestPermissions(permissions, LOCATION_PERMISSION_REQUEST_CODE,
+                    (requestCode, granted, results) -> {
+                        if (requestCode != LOCATION_PERMISSION_REQUEST_CODE) {
+                            return false;
+                        }
+                        locationEngine.invalidatePermission();
+                        settlePermissionPromises();
+                        return true;
+                    });
+        } else {
+            // Settled in onHostResume once the prompt is dismissed
+            ActivityCompat.requestPermissions(activity, permissions, LOCATION_PERMISSION_REQUEST_CODE);
         }
     }
 
-    private String getNetworkTypeName(int networkType) {
-        switch (networkType) {
-            case TelephonyManager.NETWORK_TYPE_GPRS:
-                return "GPRS";
-            case TelephonyManager.NETWORK_TYPE_EDGE:
-                return "EDGE";
-            case TelephonyManager.NETWORK_TYPE_UMTS:
-                return "UMTS";
-            case TelephonyManager.NETWORK_TYPE_CDMA:
-                return "CDMA";
-            case TelephonyManager.NETWORK_TYPE_EVDO_0:
-                return "EVDO_0";
-            case TelephonyManager.NETWORK_TYPE_EVDO_A:
-                return "EVDO_A";
-            case TelephonyManager.NETWORK_TYPE_1xRTT:
-                return "1xRTT";
-            case TelephonyManager.NETWORK_TYPE_HSDPA:
-                return "HSDPA";
-            case TelephonyManager.NETWORK_TYPE_HSUPA:
-                return "HSUPA";
-            case TelephonyManager.NETWORK_TYPE_HSPA:
-                return "HSPA";
-            case TelephonyManager.NETWORK_TYPE_IDEN:
-                return "IDEN";
-            case TelephonyManager.NETWORK_TYPE_EVDO_B:
-                return "EVDO_B";
-            case TelephonyManager.NETWORK_TYPE_LTE:
-                return "LTE";
-            case TelephonyManager.NETWORK_TYPE_EHRPD:
-                return "EHRPD";
-            case TelephonyManager.NETWORK_TYPE_HSPAP:
-                return "HSPAP";
-            case TelephonyManager.NETWORK_TYPE_GSM:
-                return "GSM";
-            case TelephonyManager.NETWORK_TYPE_TD_SCDMA:
-                return "TD_SCDMA";
-            case TelephonyManager.NETWORK_TYPE_IWLAN:
-                return "IWLAN";
-            case TelephonyManager.NETWORK_TYPE_NR:
-                return "NR";
-            default:
-                return "UNKNOWN";
+    private void settlePermissionPromises() {
+        List<Promise> waiting;
+        synchronized (permissionPromises) {
+            if (permissionPromises.isEmpty()) {
+                return;
+            }
+            waiting = new ArrayList<>(permissionPromises);
+            permissionPromises.clear();
         }
+        boolean permitted = hasLocationPermission();
+        for (Promise promise : waiting) {
+            if (permitted) {
+                // Coalesced into a single lookup by the engine
+                requestLocation(promise);
+            } else {
+                promise.reject("PERMISSION_DENIED", "Location permission denied");
+            }
+        }
+    }
+
+    @Override
+    public void onHostResume() {
+        // Permissions may have been granted or revoked while we were in the background
+        locationEngine.invalidatePermission();
+        settlePermissionPromises();
+        WifiScanCollector.get(reactContext).setForeground(true);
+        NetworkInfoCache.get(reactContext).invalidate();
+        AdIdProvider.get(reactContext).refreshIfStale();
+    }
+
+    @Override
+    public void onHostPause() {
+        WifiScanCollector.get(reactContext).setForeground(false);
+    }
+
+    @Override
+    public void onHostDestroy() {
+        stopMetricsEvents();
     }
-}
\ No newline at end of file
+}
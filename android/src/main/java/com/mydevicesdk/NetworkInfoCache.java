@@ -0,0 +1,629 @@
+package com.mydevicesdk;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import android.telephony.PhoneStateListener;
+import android.telephony.ServiceState;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import androidx.core.app.ActivityCompat;
+
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide cache of the getNetworkInfo snapshot.
+ *
+ * The snapshot is rebuilt only after something changed: network callbacks,
+ * telephony service/data state, SIM subscription changes, or an explicit
+ * {@link #invalidate()} (e.g. on resume, when permissions may have changed).
+ * Until then every caller gets the same immutable map. Identifiers that
+ * cannot change while the process lives are read once.
+ *
+ * Rebuilds are single-flight: concurrent callers share one rebuild. It fans
+ * the independent sources out on a small pool of its own, with per-source
+ * timeouts, so one slow system service can't stall the rest. Callers are
+ * often {@link CollectorExecutor} threads, so the sources must not queue
+ * behind them on that pool.
+ */
+final class NetworkInfoCache {
+    private static final String TAG = "MySdk";
+
+    // Independent sources, queried in parallel; identifiers must stay last
+    private static final int SOURCE_TELEPHONY = 0;
+    private static final int SOURCE_SUBSCRIPTIONS = 1;
+    private static final int SOURCE_WIFI = 2;
+    private static final int SOURCE_CONNECTIVITY = 3;
+    private static final int SOURCE_IDENTIFIERS = 4;
+    private static final int SOURCE_COUNT = 5;
+    private static final String[] SOURCE_NAMES = {"telephony", "subscriptions", "wifi", "connectivity", "identifiers"};
+    private static final long[] SOURCE_TIMEOUT_MS = {1000, 1500, 1000, 1000, 1000};
+
+    private static final LatencyHistogram SNAPSHOT_LATENCY = SdkMetrics.histogram("network.snapshot");
+    private static final LatencyHistogram[] SOURCE_LATENCY = new LatencyHistogram[SOURCE_COUNT];
+    private static final AtomicLong SOURCE_TIMEOUTS = SdkMetrics.counter("network.sourceTimeouts");
+    private static final AtomicLong CACHE_HITS = SdkMetrics.counter("network.cacheHits");
+
+    // One thread per parallel source; a source still stuck from an earlier rebuild is joined, not resubmitted
+    private static final AtomicInteger SOURCE_THREADS = new AtomicInteger();
+    private static final ThreadPoolExecutor SOURCE_EXECUTOR = new ThreadPoolExecutor(
+            SOURCE_COUNT - 1, SOURCE_COUNT - 1, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(SOURCE_COUNT),
+            r -> {
+                Thread t = new Thread(r, "MySdk-netinfo-" + SOURCE_THREADS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    static {
+        for (int i = 0; i < SOURCE_COUNT; i++) {
+            SOURCE_LATENCY[i] = SdkMetrics.histogram("network." + SOURCE_NAMES[i]);
+        }
+        SOURCE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static volatile NetworkInfoCache instance;
+
+    private final Context context;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReferenceArray<Map<String, Object>> lastGood = new AtomicReferenceArray<>(SOURCE_COUNT);
+    private final AtomicReference<FutureTask<Map<String, Object>>> rebuilding = new AtomicReference<>();
+    // Per-source task of the last rebuild
+    private final AtomicReferenceArray<Future<Map<String, Object>>> sourceTasks = new AtomicReferenceArray<>(SOURCE_COUNT - 1);
+    private volatile Map<String, Object> snapshot;
+    private volatile String androidId;
+    private volatile String macAddress;
+
+    static NetworkInfoCache get(Context context) {
+        NetworkInfoCache current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (NetworkInfoCache.class) {
+            if (instance == null) {
+                instance = new NetworkInfoCache(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    private NetworkInfoCache(Context context) {
+        this.context = context;
+        registerNetworkCallback();
+        new Handler(Looper.getMainLooper()).post(this::registerTelephonyListeners);
+    }
+
+    // Current snapshot if nothing changed since it was built, otherwise null
+    Map<String, Object> cached() {
+        Map<String, Object> current = snapshot;
+        if (current != null) {
+            CACHE_HITS.incrementAndGet();
+        }
+        return current;
+    }
+
+    // Current snapshot, rebuilt only if it was invalidated since the last call; concurrent
+    // callers wait for the same rebuild. It blocks, so call this from a collector thread, never the bridge.
+    Map<String, Object> snapshot() {
+        Map<String, Object> current = snapshot;
+        if (current != null) {
+            CACHE_HITS.incrementAndGet();
+            return current;
+        }
+        while (true) {
+            FutureTask<Map<String, Object>> task = rebuilding.get();
+            if (task == null) {
+                FutureTask<Map<String, Object>> created = new FutureTask<>(this::rebuild);
+                if (!rebuilding.compareAndSet(null, created)) {
+                    continue;
+                }
+                try {
+                    created.run();
+                } finally {
+                    rebuilding.compareAndSet(created, null);
+                }
+                task = created;
+            }
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for network info", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Network info rebuild failed", e.getCause());
+            }
+        }
+    }
+
+    void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    // Query the sources in parallel and merge them in a fixed order. A source that
+    // misses its timeout contributes its last good section, and the result is not cached.
+    private Map<String, Object> rebuild() {
+        Map<String, Object> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        long startGeneration = generation.get();
+        long start = SNAPSHOT_LATENCY.start(startGeneration);
+
+        List<Future<Map<String, Object>>> pending = new ArrayList<>(SOURCE_COUNT);
+        boolean joinedStale = false;
+        for (int i = 0; i < SOURCE_COUNT - 1; i++) {
+            final int source = i;
+            Future<Map<String, Object>> previous = sourceTasks.get(i);
+            if (previous != null && !previous.isDone()) {
+                // Still hanging since an earlier rebuild; wait for it again rather than pile up threads
+                pending.add(previous);
+                joinedStale = true;
+                continue;
+            }
+            Future<Map<String, Object>> task;
+            try {
+                task = SOURCE_EXECUTOR.submit(() -> collectSource(source));
+            } catch (RejectedExecutionException e) {
+                task = null;
+            }
+            sourceTasks.set(i, task);
+            pending.add(task);
+        }
+        // Identifiers are cheap after the first call, so they run on this thread
+        Map<String, Object> identifiers = collectSource(SOURCE_IDENTIFIERS);
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        boolean complete = !joinedStale;
+        for (int i = 0; i < SOURCE_COUNT - 1; i++) {
+            Map<String, Object> section = await(pending.get(i), start, SOURCE_TIMEOUT_MS[i]);
+            if (section == null) {
+                SOURCE_TIMEOUTS.incrementAndGet();
+                complete = false;
+                section = lastGood.get(i);
+                if (section == null) {
+                    map.put(SOURCE_NAMES[i] + "Error", "timeout");
+                    continue;
+                }
+            }
+            map.putAll(section);
+        }
+        map.putAll(identifiers);
+
+        Map<String, Object> frozen = Collections.unmodifiableMap(map);
+        SNAPSHOT_LATENCY.recordSince(start);
+        // Don't cache a partial snapshot, or one that raced with a change notification
+        if (complete && generation.get() == startGeneration) {
+            snapshot = frozen;
+        }
+        return frozen;
+    }
+
+    private static Map<String, Object> await(Future<Map<String, Object>> future, long start, long timeoutMs) {
+        if (future == null) {
+            return null;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - start);
+        try {
+            return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private Map<String, Object> collectSource(int source) {
+        long start = SOURCE_LATENCY[source].start();
+        Map<String, Object> map = new LinkedHashMap<>();
+        switch (source) {
+            case SOURCE_TELEPHONY:
+                collectTelephony(map);
+                break;
+            case SOURCE_SUBSCRIPTIONS:
+                collectSubscriptions(map);
+                break;
+            case SOURCE_WIFI:
+                collectWifi(map);
+                break;
+            case SOURCE_CONNECTIVITY:
+                collectConnectivity(map);
+                break;
+            default:
+                collectIdentifiers(map);
+                break;
+        }
+        Map<String, Object> section = Collections.unmodifiableMap(map);
+        lastGood.set(source, section);
+        SOURCE_LATENCY[source].recordSince(start);
+        return section;
+    }
+
+    private void registerNetworkCallback() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                invalidate();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                invalidate();
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                invalidate();
+            }
+
+            @Override
+            public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+                invalidate();
+            }
+        };
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                connectivityManager.registerDefaultNetworkCallback(callback);
+            } else {
+                connectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build(), callback);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Network callback unavailable, network info will refresh on resume only");
+        }
+    }
+
+    // PhoneStateListener needs a Looper, so this runs on the main thread
+    private void registerTelephonyListeners() {
+        try {
+            TelephonyManager telephonyManager = (TelephonyManager) context
+                    .getSystemService(Context.TELEPHONY_SERVICE);
+            if (telephonyManager != null) {
+                telephonyManager.listen(new PhoneStateListener() {
+                    @Override
+                    public void onServiceStateChanged(ServiceState serviceState) {
+                        invalidate();
+                    }
+
+                    @Override
+                    public void onDataConnectionStateChanged(int state, int networkType) {
+                        invalidate();
+                    }
+                }, PhoneStateListener.LISTEN_SERVICE_STATE | PhoneStateListener.LISTEN_DATA_CONNECTION_STATE);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
+                SubscriptionManager.from(context).addOnSubscriptionsChangedListener(
+                        new SubscriptionManager.OnSubscriptionsChangedListener() {
+                            @Override
+                            public void onSubscriptionsChanged() {
+                                invalidate();
+                            }
+                        });
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Telephony listeners unavailable, network info will refresh on resume only");
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void collectTelephony(Map<String, Object> map) {
+        TelephonyManager telephonyManager = (TelephonyManager) context
+                .getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephonyManager == null) {
+            return;
+        }
+        try {
+            map.put("simOperatorName", telephonyManager.getSimOperatorName());
+            map.put("simCountryIso", telephonyManager.getSimCountryIso());
+            map.put("networkOperator", telephonyManager.getNetworkOperator());
+            map.put("networkOperatorName", telephonyManager.getNetworkOperatorName());
+            map.put("isNetworkRoaming", telephonyManager.isNetworkRoaming());
+            int networkType = telephonyManager.getNetworkType();
+            map.put("networkType", networkType);
+            map.put("phoneType", telephonyManager.getPhoneType());
+            map.put("dataActivity", telephonyManager.getDataActivity());
+            map.put("dataState", telephonyManager.getDataState());
+
+            // Additional SIM info (requires READ_PHONE_STATE permission)
+            boolean canReadPhoneState = ActivityCompat.checkSelfPermission(context,
+                    Manifest.permission.READ_PHONE_STATE) == PackageManager.PERMISSION_GRANTED;
+            if (canReadPhoneState) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    map.put("simSerialNumber", telephonyManager.getSimSerialNumber());
+                }
+                map.put("simState", telephonyManager.getSimState());
+
+                // Network class calculation
+                map.put("networkClass", getNetworkClass(networkType));
+                map.put("androidNetworkType", getNetworkTypeName(networkType));
+            }
+        } catch (Exception e) {
+            map.put("telephonyError", e.getMessage());
+        }
+    }
+
+    // Separate source: getActiveSubscriptionInfoList can be slow on some devices
+    @SuppressLint("MissingPermission")
+    private void collectSubscriptions(Map<String, Object> map) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1
+                || ActivityCompat.checkSelfPermission(context,
+                Manifest.permission.READ_PHONE_STATE) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        try {
+            // Multiple SIM support
+            List<SubscriptionInfo> subscriptionInfos = SubscriptionManager.from(context)
+                    .getActiveSubscriptionInfoList();
+            if (subscriptionInfos != null && !subscriptionInfos.isEmpty()) {
+                List<Object> simCards = new ArrayList<>(subscriptionInfos.size());
+                for (SubscriptionInfo info : subscriptionInfos) {
+                    Map<String, Object> simCard = new LinkedHashMap<>();
+                    simCard.put("carrierName", String.valueOf(info.getCarrierName()));
+                    simCard.put("displayName", String.valueOf(info.getDisplayName()));
+                    simCard.put("simSlotIndex", info.getSimSlotIndex());
+                    simCard.put("countryIso", info.getCountryIso());
+                    simCards.add(Collections.unmodifiableMap(simCard));
+                }
+                map.put("simCards", Collections.unmodifiableList(simCards));
+            }
+        } catch (Exception e) {
+            map.put("telephonyError", e.getMessage());
+        }
+    }
+
+    private void collectWifi(Map<String, Object> map) {
+        WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        if (wifiManager == null) {
+            return;
+        }
+        try {
+            WifiInfo wifiInfo = wifiManager.getConnectionInfo();
+            if (wifiInfo != null) {
+                map.put("ssid", wifiInfo.getSSID());
+                map.put("bssid", wifiInfo.getBSSID());
+                map.put("linkSpeed", wifiInfo.getLinkSpeed());
+                map.put("frequency", wifiInfo.getFrequency());
+                map.put("rssi", wifiInfo.getRssi());
+                map.put("networkId", wifiInfo.getNetworkId());
+
+                // Calculate signal strength percentage
+                int signalLevel = WifiManager.calculateSignalLevel(wifiInfo.getRssi(), 5);
+                map.put("signalLevel", signalLevel);
+                map.put("strength", (signalLevel * 100) / 4); // Convert to percentage
+
+                // Additional WiFi info for newer Android versions
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    map.put("rxLinkSpeed", wifiInfo.getRxLinkSpeedMbps());
+                    map.put("txLinkSpeed", wifiInfo.getTxLinkSpeedMbps());
+                }
+            }
+
+            map.put("isWifiEnabled", wifiManager.isWifiEnabled());
+        } catch (Exception e) {
+            map.put("wifiError", e.getMessage());
+        }
+    }
+
+    private void collectConnectivity(Map<String, Object> map) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                Network activeNetwork = connectivityManager.getActiveNetwork();
+                NetworkCapabilities capabilities = activeNetwork != null
+                        ? connectivityManager.getNetworkCapabilities(activeNetwork) : null;
+                if (capabilities != null) {
+                    map.put("hasWifi", capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI));
+                    map.put("hasCellular", capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR));
+                    map.put("hasEthernet", capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET));
+                    map.put("hasVpn", capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN));
+
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                        map.put("hasLowPan", capabilities.hasTransport(NetworkCapabilities.TRANSPORT_LOWPAN));
+                    }
+
+                    map.put("isMetered",
+                            !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
+                    map.put("isValidated",
+                            capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED));
+
+                    // Bandwidth info
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                        map.put("downstreamBandwidth", capabilities.getLinkDownstreamBandwidthKbps());
+                        map.put("upstreamBandwidth", capabilities.getLinkUpstreamBandwidthKbps());
+                    }
+                }
+            } else {
+                // Fallback for older Android versions
+                NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+                if (activeNetworkInfo != null) {
+                    map.put("networkTypeName", activeNetworkInfo.getTypeName());
+                    map.put("networkSubtypeName", activeNetworkInfo.getSubtypeName());
+                    map.put("isConnected", activeNetworkInfo.isConnected());
+                    map.put("isAvailable", activeNetworkInfo.isAvailable());
+                    map.put("isRoaming", activeNetworkInfo.isRoaming());
+                }
+            }
+        } catch (Exception e) {
+            map.put("connectivityError", e.getMessage());
+        }
+    }
+
+    // androidId and the MAC address don't change while the process lives, so read them once
+    private void collectIdentifiers(Map<String, Object> map) {
+        if (macAddress == null) {
+            macAddress = readMacAddress();
+        }
+        map.put("macAddress", macAddress);
+
+        try {
+            if (androidId == null) {
+                androidId = Settings.Secure.getString(context.getContentResolver(),
+                        Settings.Secure.ANDROID_ID);
+            }
+            map.put("androidId", androidId);
+        } catch (Exception e) {
+            map.put("androidIdError", e.getMessage());
+        }
+    }
+
+    private String readMacAddress() {
+        try {
+            // Method 1: Try WiFi Manager (works on older Android versions)
+            WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+            if (wifiManager != null) {
+                WifiInfo wifiInfo = wifiManager.getConnectionInfo();
+                if (wifiInfo != null && wifiInfo.getMacAddress() != null
+                        && !wifiInfo.getMacAddress().equals("02:00:00:00:00:00")) {
+                    return wifiInfo.getMacAddress();
+                }
+            }
+        } catch (Exception e) {
+            // Continue to next method
+        }
+
+        try {
+            // Method 2: Try NetworkInterface (works on some devices)
+            List<NetworkInterface> interfaces = Collections.list(NetworkInterface.getNetworkInterfaces());
+            for (NetworkInterface networkInterface : interfaces) {
+                if (!networkInterface.getName().equalsIgnoreCase("wlan0"))
+                    continue;
+
+                byte[] mac = networkInterface.getHardwareAddress();
+                if (mac == null)
+                    continue;
+
+                StringBuilder buf = new StringBuilder();
+                for (byte aMac : mac) {
+                    buf.append(String.format("%02X:", aMac));
+                }
+                if (buf.length() > 0) {
+                    buf.deleteCharAt(buf.length() - 1);
+                }
+                return buf.toString();
+            }
+        } catch (Exception e) {
+            // Continue to fallback
+        }
+
+        // Fallback for Android 10+
+        return "unavailable_android_10+";
+    }
+
+    static String getNetworkClass(int networkType) {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return "2G";
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+                return "3G";
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                return "4G";
+            case TelephonyManager.NETWORK_TYPE_NR:
+                return "5G";
+            default:
+                return "Unknown";
+        }
+    }
+
+    static String getNetworkTypeName(int networkType) {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+                return "GPRS";
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+                return "EDGE";
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+                return "UMTS";
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+                return "CDMA";
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+                return "EVDO_0";
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+                return "EVDO_A";
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+                return "1xRTT";
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+                return "HSDPA";
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+                return "HSUPA";
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+                return "HSPA";
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return "IDEN";
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+                return "EVDO_B";
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                return "LTE";
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+                return "EHRPD";
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+                return "HSPAP";
+            case TelephonyManager.NETWORK_TYPE_GSM:
+                return "GSM";
+            case TelephonyManager.NETWORK_TYPE_TD_SCDMA:
+                return "TD_SCDMA";
+            case TelephonyManager.NETWORK_TYPE_IWLAN:
+                return "IWLAN";
+            case TelephonyManager.NETWORK_TYPE_NR:
+                return "NR";
+            default:
+                return "UNKNOWN";
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.mydevicesdk;
+
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+
+import okio.BufferedSink;
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Request body encodings for /events, picked per batch by size.
+ *
+ * Tiny bodies go out as-is, since compression headers would eat the gain.
+ * Larger ones are gzipped, or, once the server has said it accepts it,
+ * deflated with a preset dictionary of the strings every network snapshot
+ * repeats. The dictionary lets even a single event compress well. It is part
+ * of the encoding name: a changed dictionary needs a new name.
+ */
+enum PayloadCodec {
+    IDENTITY(null),
+    GZIP("gzip"),
+    DEFLATE_DICT("x-deflate-dict-v1");
+
+    // Most common strings go last, where deflate finds them at the shortest distance
+    private static final byte[] DICTIONARY = (
+            "\"collectionErrors\":[],\"timezone\":\"\",\"provider\":\"fused\",\"bearing\":\"speed\":"
+            + "\"altitude\":\"accuracy\":\"longitude\":\"latitude\":\"location\":{"
+            + "\"snapshot\":{\"epoch\":\"version\":\"keyframe\":false,\"baseVersion\":\"removed\":[]},"
+            + "\"simCards\":[{\"carrierName\":\"displayName\":\"simSlotIndex\":0,\"countryIso\":\"\"}],"
+            + "\"macAddress\":\"02:00:00:00:00:00\",\"androidId\":\"adId\":\"publicIp\":"
+            + "\"hasLowPan\":false,\"hasVpn\":false,\"hasEthernet\":false,\"hasCellular\":\"hasWifi\":"
+            + "\"isValidated\":true,\"isMetered\":\"upstreamBandwidth\":\"downstreamBandwidth\":"
+            + "\"networkTypeName\":\"WIFI\",\"networkSubtypeName\":\"\",\"isAvailable\":true,\"isRoaming\":false,"
+            + "\"ssid\":\"<unknown ssid>\",\"bssid\":\"02:00:00:00:00:00\",\"linkSpeed\":\"frequency\":"
+            + "\"rssi\":-\"networkId\":\"signalLevel\":\"strength\":\"rxLinkSpeed\":\"txLinkSpeed\":"
+            + "\"isWifiEnabled\":true,\"simOperatorName\":\"simCountryIso\":\"networkOperator\":"
+            + "\"networkOperatorName\":\"isNetworkRoaming\":false,\"networkType\":13,\"phoneType\":1,"
+            + "\"dataActivity\":\"dataState\":2,\"simState\":5,\"networkClass\":\"4G\",\"androidNetworkType\":\"LTE\","
+            + "\"brand\":\"model\":\"systemName\":\"Android\",\"systemVersion\":\"appVersion\":\"buildNumber\":"
+            + "\"packageName\":\"manufacturer\":\"deviceName\":\"deviceType\":\"Handset\",\"totalMemory\":"
+            + "\"usedMemory\":\"isTablet\":false,\"isConnected\":true,\"network\":{\"android_network_info\":{"
+            + "{\"deviceId\":\"platform\":\"android\",\"timestamp\":\"20\",\"data\":{"
+    ).getBytes(Charset.forName("UTF-8"));
+
+    final String contentEncoding;
+
+    PayloadCodec(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    // Wrap the request sink; closing the result finishes the stream
+    BufferedSink wrap(BufferedSink sink) {
+        switch (this) {
+            case GZIP:
+                return Okio.buffer(new GzipSink(sink));
+            case DEFLATE_DICT:
+                Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+                deflater.setDictionary(DICTIONARY);
+                return Okio.buffer(new DeflaterSink(sink, deflater));
+            case IDENTITY:
+            default:
+                return sink;
+        }
+    }
+
+    // Pick the encoding for a body of about the given size
+    static PayloadCodec choose(long bodyBytes, long thresholdBytes, boolean dictionaryAccepted) {
+        if (dictionaryAccepted) {
+            // The dictionary pays off on much smaller bodies than plain gzip does
+            return bodyBytes >= thresholdBytes / 4 ? DEFLATE_DICT : IDENTITY;
+        }
+        return bodyBytes >= thresholdBytes ? GZIP : IDENTITY;
+    }
+}
@@ -0,0 +1,85 @@
+package com.mydevicesdk;
+
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.Map;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Public IP of the active network, looked up again only when the network
+ * changed or the value got old.
+ *
+ * The cached value is keyed on the fields that identify the network, so a
+ * new snapshot of the same network keeps it. A failed lookup returns null
+ * and caches nothing: the IP of the previous network is never reported for
+ * a new one.
+ */
+final class PublicIpCache {
+    private static final String TAG = "MySdk";
+    private static final String[] NETWORK_FIELDS = {
+            "hasWifi", "hasCellular", "hasEthernet", "hasVpn", "ssid", "bssid",
+            "networkOperator", "networkTypeName", "isConnected"};
+
+    private final String url;
+    private final long ttlMs;
+    // Guarded by this
+    private String networkKey;
+    private String ip;
+    private long fetchedAt;
+
+    PublicIpCache(String url, long ttlMs) {
+        this.url = url;
+        this.ttlMs = ttlMs;
+    }
+
+    // The public IP for this network snapshot (from NetworkInfoCache), null if it can't be looked up
+    synchronized String get(Map<String, Object> network) {
+        long now = System.currentTimeMillis();
+        String key = networkKey(network);
+        if (key.equals(networkKey) && now - fetchedAt < ttlMs) {
+            return ip;
+        }
+        String fetched = fetch();
+        if (fetched == null) {
+            return null;
+        }
+        networkKey = key;
+        ip = fetched;
+        fetchedAt = now;
+        return fetched;
+    }
+
+    private String fetch() {
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = HttpTransport.client().newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                Log.w(TAG, "⚠️ Public IP lookup failed: HTTP " + response.code());
+                return null;
+            }
+            String fetched = new JSONObject(body.string()).optString("ip", null);
+            if (fetched == null || fetched.isEmpty()) {
+                Log.w(TAG, "⚠️ Public IP lookup returned no ip");
+                return null;
+            }
+            return fetched;
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Public IP lookup failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Signal strength, link speed and data activity change all the time and are left out
+    private static String networkKey(Map<String, Object> network) {
+        StringBuilder key = new StringBuilder();
+        for (String field : NETWORK_FIELDS) {
+            key.append(network.get(field)).append('|');
+        }
+        return key.toString();
+    }
+}
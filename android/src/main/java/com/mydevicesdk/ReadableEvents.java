@@ -0,0 +1,111 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.provider.Settings;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Turns custom events from JS into queue records in one pass.
+ *
+ * The ReadableMap from the bridge is walked once and written straight into
+ * the thread's {@link JsonStreamWriter}: no toHashMap() or JSONObject copy
+ * and no JSON string in between. The record is the JS sendData payload
+ * shape, with the event as data. Custom events skip the duplicate check:
+ * two identical events logged on purpose are both sent.
+ */
+final class ReadableEvents {
+    private final Context context;
+    private final SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    private final Date now = new Date();
+    private String deviceId;
+
+    ReadableEvents(Context context) {
+        this.context = context.getApplicationContext();
+        this.isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    // Encode the event and queue it; false if it could not be queued
+    synchronized boolean enqueue(ReadableMap event) throws Exception {
+        if (deviceId == null) {
+            deviceId = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+        }
+        now.setTime(System.currentTimeMillis());
+
+        JsonStreamWriter w = JsonStreamWriter.local();
+        w.beginObject()
+                .name("deviceId").value(deviceId)
+                .name("platform").value("android")
+                .name("data");
+        write(w, event);
+        w.name("timestamp").value(isoFormat.format(now));
+        w.endObject();
+        return MySdk.enqueueRecord(context, w.toByteArray());
+    }
+
+    static void write(JsonStreamWriter w, ReadableMap map) {
+        w.beginObject();
+        ReadableMapKeySetIterator keys = map.keySetIterator();
+        while (keys.hasNextKey()) {
+            String key = keys.nextKey();
+            w.name(key);
+            switch (map.getType(key)) {
+                case Boolean:
+                    w.value(map.getBoolean(key));
+                    break;
+                case Number:
+                    w.value(map.getDouble(key));
+                    break;
+                case String:
+                    w.value(map.getString(key));
+                    break;
+                case Map:
+                    write(w, map.getMap(key));
+                    break;
+                case Array:
+                    write(w, map.getArray(key));
+                    break;
+                case Null:
+                default:
+                    w.nullValue();
+                    break;
+            }
+        }
+        w.endObject();
+    }
+
+    static void write(JsonStreamWriter w, ReadableArray array) {
+        w.beginArray();
+        for (int i = 0; i < array.size(); i++) {
+            switch (array.getType(i)) {
+                case Boolean:
+                    w.value(array.getBoolean(i));
+                    break;
+                case Number:
+                    w.value(array.getDouble(i));
+                    break;
+                case String:
+                    w.value(array.getString(i));
+                    break;
+                case Map:
+                    write(w, array.getMap(i));
+                    break;
+                case Array:
+                    write(w, array.getArray(i));
+                    break;
+                case Null:
+                default:
+                    w.nullValue();
+                    break;
+            }
+        }
+        w.endArray();
+    }
+}
@@ -0,0 +1,135 @@
+package com.mydevicesdk;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides what to do after a failed /events upload.
+ *
+ * Failures are classified by cause. Network errors and server errors
+ * (5xx, 408, 429) are retried with exponential backoff and full jitter, so
+ * devices that failed together do not retry together; a 429 waits at least
+ * as long as its Retry-After. A rejected token is dropped and the batch is
+ * retried right away with a fresh one. Other 4xx mean the batch itself is
+ * bad.
+ *
+ * Consecutive server failures open a circuit breaker that holds every
+ * upload for an open period, doubling on each trip. After it, a single
+ * trial batch decides whether the breaker closes again. Network errors only
+ * back off: they say nothing about the backend's health.
+ */
+final class RetryPolicy {
+    enum Outcome {
+        SUCCESS,
+        // No response: offline, DNS, timeout, reset
+        NETWORK,
+        // 401/403: token expired or revoked
+        UNAUTHORIZED,
+        // 429, backing off at least Retry-After
+        THROTTLED,
+        // 5xx, 408 and other 4xx that do not depend on the batch
+        SERVER,
+        // 400, 413, 422: the batch is not acceptable as is
+        REJECTED
+    }
+
+    enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    private static final long BASE_DELAY_MS = 2000;
+    private static final long MAX_DELAY_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long BASE_OPEN_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_OPEN_MS = TimeUnit.MINUTES.toMillis(30);
+
+    private final Random random = new Random();
+    private int attempts;
+    private int serverFailures;
+    private int trips;
+    private BreakerState state = BreakerState.CLOSED;
+    private long openUntil;
+
+    static Outcome classify(int code) {
+        if (code >= 200 && code < 300) {
+            return Outcome.SUCCESS;
+        } else if (code == 401 || code == 403) {
+            return Outcome.UNAUTHORIZED;
+        } else if (code == 429) {
+            return Outcome.THROTTLED;
+        } else if (code == 400 || code == 413 || code == 422) {
+            return Outcome.REJECTED;
+        }
+        return Outcome.SERVER;
+    }
+
+    // Whether a batch may be sent now; moves an expired open breaker to half-open
+    synchronized boolean allowRequest(long nowMs) {
+        if (state == BreakerState.OPEN) {
+            if (nowMs < openUntil) {
+                return false;
+            }
+            state = BreakerState.HALF_OPEN;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        attempts = 0;
+        serverFailures = 0;
+        trips = 0;
+        state = BreakerState.CLOSED;
+    }
+
+    // Record a failure and return how long to wait before the next attempt
+    synchronized long onFailure(Outcome outcome, long retryAfterMs, long nowMs) {
+        attempts++;
+        long delay = jitter(attempts);
+        if (outcome == Outcome.THROTTLED || outcome == Outcome.SERVER) {
+            serverFailures++;
+            if (state == BreakerState.HALF_OPEN || serverFailures >= FAILURE_THRESHOLD) {
+                long open = Math.min(MAX_OPEN_MS, BASE_OPEN_MS << Math.min(trips, 5));
+                trips++;
+                state = BreakerState.OPEN;
+                openUntil = nowMs + open;
+                delay = Math.max(delay, open);
+            }
+        }
+        return Math.max(delay, Math.min(retryAfterMs, MAX_OPEN_MS));
+    }
+
+    synchronized BreakerState state() {
+        return state;
+    }
+
+    synchronized long openRemainingMs(long nowMs) {
+        return state == BreakerState.OPEN ? Math.max(0, openUntil - nowMs) : 0;
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^attempt))
+    private long jitter(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 1, 20));
+        return (long) (random.nextDouble() * ceiling);
+    }
+
+    // Retry-After as delta-seconds or an HTTP date, in milliseconds; 0 if absent or unparseable
+    static long parseRetryAfter(String value, long nowMs) {
+        if (value == null) {
+            return 0;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+        } catch (NumberFormatException ignored) {
+            // not delta-seconds
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            Date date = format.parse(trimmed);
+            return date != null ? Math.max(0, date.getTime() - nowMs) : 0;
+        } catch (Exception ignored) {
+            return 0;
+        }
+    }
+}
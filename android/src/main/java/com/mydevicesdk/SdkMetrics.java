@@ -0,0 +1,61 @@
+package com.mydevicesdk;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of SDK counters and latency histograms.
+ *
+ * Call sites look their metric up once into a static final field, so the
+ * hot path is a single atomic add (or a few, for a histogram). Everything is
+ * read on demand by {@link #snapshot()}, nothing is aggregated in the
+ * background.
+ */
+final class SdkMetrics {
+    private static final ConcurrentHashMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private SdkMetrics() {}
+
+    static AtomicLong counter(String name) {
+        AtomicLong counter = COUNTERS.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = COUNTERS.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(name);
+            histogram = HISTOGRAMS.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    // {"counters": {name: value}, "latency": {name: {count, meanMs, p50Ms, ...}}}, sorted by name
+    static Map<String, Object> snapshot() {
+        Map<String, Object> counters = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+        Map<String, Object> latency = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            latency.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        Map<String, Object> map = new TreeMap<>();
+        map.put("counters", counters);
+        map.put("latency", latency);
+        return map;
+    }
+}
@@ -0,0 +1,176 @@
+package com.mydevicesdk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delta encoding of consecutive device snapshots.
+ *
+ * Each sample is compared with the last snapshot known to have been
+ * uploaded, not the last one sent, so a delta never depends on an event still
+ * in the queue. Nested maps are diffed key by key; keys that disappeared are
+ * listed as paths. A full keyframe goes out first, every keyframeEvery
+ * samples, and whenever the uploader reports lost events.
+ *
+ * Versions count up within an epoch (the encoder's creation time). The
+ * server rebuilds version v with {@link #apply} from the state it holds for
+ * baseVersion; bases only move forward, so older states can be dropped.
+ */
+final class SnapshotDelta {
+
+    static final class Encoded {
+        final long epoch;
+        final long version;
+        final long baseVersion;
+        final boolean keyframe;
+        final Map<String, Object> changed;
+        final List<List<String>> removed;
+
+        Encoded(long epoch, long version, long baseVersion, boolean keyframe,
+                Map<String, Object> changed, List<List<String>> removed) {
+            this.epoch = epoch;
+            this.version = version;
+            this.baseVersion = baseVersion;
+            this.keyframe = keyframe;
+            this.changed = changed;
+            this.removed = removed;
+        }
+    }
+
+    private static final class Sent {
+        final long version;
+        final Map<String, Object> state;
+        final long sequence;
+
+        Sent(long version, Map<String, Object> state, long sequence) {
+            this.version = version;
+            this.state = state;
+            this.sequence = sequence;
+        }
+    }
+
+    private final long epoch = System.currentTimeMillis();
+    private final int keyframeEvery;
+    private final ArrayDeque<Sent> inFlight = new ArrayDeque<>();
+    private Map<String, Object> ackedState;
+    private long ackedVersion = -1;
+    private long nextVersion;
+    private long sinceKeyframe;
+    private long lostSeen = -1;
+
+    SnapshotDelta(int keyframeEvery) {
+        this.keyframeEvery = Math.max(1, keyframeEvery);
+    }
+
+    // Fold in the uploader's progress: settled/lost counters from EventUploader
+    synchronized void acknowledge(long settled, long lost) {
+        if (lostSeen >= 0 && lost != lostSeen) {
+            // Something we may have based a delta on never made it; start over from a keyframe
+            inFlight.clear();
+            ackedState = null;
+            ackedVersion = -1;
+        }
+        lostSeen = lost;
+        while (!inFlight.isEmpty() && inFlight.peekFirst().sequence <= settled) {
+            Sent sent = inFlight.pollFirst();
+            ackedState = sent.state;
+            ackedVersion = sent.version;
+        }
+    }
+
+    synchronized Encoded encode(Map<String, Object> state) {
+        long version = nextVersion++;
+        boolean keyframe = ackedState == null || sinceKeyframe >= keyframeEvery;
+        if (keyframe) {
+            sinceKeyframe = 1;
+            return new Encoded(epoch, version, -1, true, state, Collections.<List<String>>emptyList());
+        }
+        sinceKeyframe++;
+        Map<String, Object> changed = new LinkedHashMap<>();
+        List<List<String>> removed = new ArrayList<>();
+        diff(ackedState, state, changed, removed, Collections.<String>emptyList());
+        return new Encoded(epoch, version, ackedVersion, false, changed, removed);
+    }
+
+    // Record an encoded snapshot once the uploader accepted it, with acceptedEvents() read right after
+    synchronized void sent(Encoded encoded, Map<String, Object> state, long sequence) {
+        inFlight.addLast(new Sent(encoded.version, state, sequence));
+    }
+
+    // Reference decoder: the state a delta describes, given the state at its base version
+    static Map<String, Object> apply(Map<String, Object> base, Map<String, Object> changed, List<List<String>> removed) {
+        Map<String, Object> result = merge(base, changed);
+        for (List<String> path : removed) {
+            remove(result, path, 0);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void diff(Map<String, Object> base, Map<String, Object> current,
+                             Map<String, Object> changed, List<List<String>> removed, List<String> path) {
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            Object previous = base.get(key);
+            if (value instanceof Map && previous instanceof Map) {
+                Map<String, Object> nested = new LinkedHashMap<>();
+                diff((Map<String, Object>) previous, (Map<String, Object>) value, nested, removed, child(path, key));
+                if (!nested.isEmpty()) {
+                    changed.put(key, nested);
+                }
+            } else if (!base.containsKey(key) || !equal(previous, value)) {
+                changed.put(key, value);
+            }
+        }
+        for (String key : base.keySet()) {
+            if (!current.containsKey(key)) {
+                removed.add(child(path, key));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> merge(Map<String, Object> base, Map<String, Object> changed) {
+        Map<String, Object> result = new LinkedHashMap<>(base);
+        for (Map.Entry<String, Object> entry : changed.entrySet()) {
+            Object previous = result.get(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Map && previous instanceof Map) {
+                value = merge((Map<String, Object>) previous, (Map<String, Object>) value);
+            }
+            result.put(entry.getKey(), value);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void remove(Map<String, Object> map, List<String> path, int index) {
+        String key = path.get(index);
+        if (index == path.size() - 1) {
+            map.remove(key);
+            return;
+        }
+        Object nested = map.get(key);
+        if (nested instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>((Map<String, Object>) nested);
+            remove(copy, path, index + 1);
+            map.put(key, copy);
+        }
+    }
+
+    private static List<String> child(List<String> path, String key) {
+        String[] result = path.toArray(new String[path.size() + 1]);
+        result[path.size()] = key;
+        return Arrays.asList(result);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,234 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.provider.Settings;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the API token used for /events.
+ *
+ * Refreshes are single-flight: concurrent callers that find the token stale
+ * all wait on the same in-flight request. After each refresh a background
+ * refresh is scheduled ahead of the token's exp claim, with jitter so a
+ * fleet of devices does not hit /get-token in the same second; a failed
+ * one is retried with backoff. The last token is persisted and reused on
+ * cold start while it is still valid.
+ */
+final class TokenManager {
+    private static final String TAG = "MySdk";
+    private static final String PREFS = "mysdk_token";
+    private static final LatencyHistogram REFRESH_LATENCY = SdkMetrics.histogram("token.refresh");
+    private static final AtomicLong REFRESH_FAILURES = SdkMetrics.counter("token.refreshFailures");
+    private static final long EXPIRY_MARGIN_SEC = 30;
+    private static final long REFRESH_LEAD_SEC = 120;
+    private static final long MAX_JITTER_SEC = 300;
+    private static final long DEFAULT_LIFETIME_SEC = 3600;
+    private static final long RETRY_BASE_SEC = 5;
+    private static final long RETRY_MAX_SEC = 300;
+
+    /** A token together with its decoded expiry, so the JWT is only decoded once. */
+    private static final class Entry {
+        final String token;
+        final long expiry;
+
+        Entry(String token, long expiry) {
+            this.token = token;
+            this.expiry = expiry;
+        }
+    }
+
+    private final Context context;
+    private final String baseUrl;
+    private final String appId;
+    private final SharedPreferences prefs;
+    private final Random random = new Random();
+    private final AtomicReference<FutureTask<Entry>> inFlight = new AtomicReference<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile Entry current;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    TokenManager(Context context, String baseUrl, String appId) {
+        this.context = context.getApplicationContext();
+        this.baseUrl = baseUrl;
+        this.appId = appId;
+        this.prefs = this.context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MySdk-token");
+            t.setDaemon(true);
+            return t;
+        });
+        restore();
+    }
+
+    // Valid token, refreshing (or joining an in-flight refresh) when needed
+    String getToken() throws Exception {
+        Entry entry = current;
+        if (isFresh(entry)) {
+            return entry.token;
+        }
+        return refresh(entry).token;
+    }
+
+    // Seconds since epoch at which the current token expires, 0 if none
+    long getExpiry() {
+        Entry entry = current;
+        return entry != null ? entry.expiry : 0;
+    }
+
+    // Drop the current token, e.g. after the server rejected it
+    void invalidate(String rejected) {
+        Entry entry = current;
+        if (entry != null && entry.token.equals(rejected)) {
+            current = null;
+        }
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Replace seen, the entry the caller found stale (or null); joins a refresh already in flight
+    private Entry refresh(final Entry seen) throws Exception {
+        while (true) {
+            FutureTask<Entry> task = inFlight.get();
+            if (task == null) {
+                FutureTask<Entry> created = new FutureTask<>(new Callable<Entry>() {
+                    @Override
+                    public Entry call() throws Exception {
+                        // Another refresh may have finished since the caller read current
+                        Entry latest = current;
+                        if (latest != seen && isFresh(latest)) {
+                            return latest;
+                        }
+                        return fetch();
+                    }
+                });
+                if (!inFlight.compareAndSet(null, created)) {
+                    continue;
+                }
+                try {
+                    created.run();
+                } finally {
+                    inFlight.compareAndSet(created, null);
+                }
+                task = created;
+            }
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+    }
+
+    private Entry fetch() throws Exception {
+        String deviceId = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+        long start = REFRESH_LATENCY.start();
+        String token;
+        try {
+            token = HttpTransport.fetchToken(baseUrl, appId, deviceId);
+        } catch (Exception e) {
+            REFRESH_FAILURES.incrementAndGet();
+            throw e;
+        } finally {
+            REFRESH_LATENCY.recordSince(start);
+        }
+        Entry entry = new Entry(token, decodeExpiry(token));
+        current = entry;
+        prefs.edit()
+                .putString("token", entry.token)
+                .putLong("expiry", entry.expiry)
+                .putString("appId", appId)
+                .putString("baseUrl", baseUrl)
+                .apply();
+        scheduleRefresh(entry);
+        Log.i(TAG, "✅ Token refreshed, expires at " + entry.expiry);
+        return entry;
+    }
+
+    private void restore() {
+        String token = prefs.getString("token", null);
+        long expiry = prefs.getLong("expiry", 0);
+        if (token == null || !appId.equals(prefs.getString("appId", null))
+                || !baseUrl.equals(prefs.getString("baseUrl", null))) {
+            return;
+        }
+        Entry entry = new Entry(token, expiry);
+        if (isFresh(entry)) {
+            current = entry;
+            scheduleRefresh(entry);
+        }
+    }
+
+    // Refresh in the background a little before exp, spread out by random jitter
+    private void scheduleRefresh(Entry entry) {
+        long lifetime = Math.max(0, entry.expiry - nowSec());
+        long jitterBound = Math.min(MAX_JITTER_SEC, lifetime / 10);
+        long jitter = jitterBound > 0 ? (long) (random.nextDouble() * jitterBound) : 0;
+        schedule(entry, Math.max(0, lifetime - REFRESH_LEAD_SEC - jitter), 0);
+    }
+
+    private synchronized void schedule(final Entry entry, long delaySec, final int attempt) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        // A retry is moot once another refresh replaced the entry; that one scheduled its own
+        if (scheduler.isShutdown() || attempt > 0 && current != entry && isFresh(current)) {
+            return;
+        }
+        scheduledRefresh = scheduler.schedule(() -> {
+            try {
+                refresh(entry);
+            } catch (Exception e) {
+                // Full jitter backoff, so callers don't end up refreshing inline at expiry
+                long ceiling = Math.min(RETRY_MAX_SEC, RETRY_BASE_SEC << Math.min(attempt, 10));
+                long retry = 1 + (long) (random.nextDouble() * ceiling);
+                Log.e(TAG, "❌ Background token refresh failed, retrying in " + retry + " s: ", e);
+                schedule(entry, retry, attempt + 1);
+            }
+        }, delaySec, TimeUnit.SECONDS);
+    }
+
+    private static boolean isFresh(Entry entry) {
+        return entry != null && nowSec() < entry.expiry - EXPIRY_MARGIN_SEC;
+    }
+
+    // Read the exp claim from the JWT payload segment
+    private static long decodeExpiry(String token) {
+        int first = token.indexOf('.');
+        int second = first >= 0 ? token.indexOf('.', first + 1) : -1;
+        if (first >= 0 && second > first) {
+            try {
+                byte[] json = Base64.decode(token.substring(first + 1, second),
+                        Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
+                long exp = new JSONObject(new String(json, "UTF-8")).optLong("exp", 0);
+                if (exp > 0) {
+                    return exp;
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "⚠️ Could not decode token expiry, assuming default lifetime");
+            }
+        }
+        return nowSec() + DEFAULT_LIFETIME_SEC;
+    }
+
+    private static long nowSec() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,161 @@
+package com.mydevicesdk;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Always-on flight recorder of SDK internals.
+ *
+ * A fixed ring of the last {@link #CAPACITY} trace events, stored in
+ * parallel primitive arrays. Writers claim a slot with one atomic increment
+ * and publish it with a per-slot sequence number; nothing is locked or
+ * allocated, and the oldest events are overwritten. Event names are
+ * registered once up front and referenced by index. Readers skip slots
+ * that are being rewritten while they read them.
+ *
+ * {@link #exportJson()} writes the buffer in Chrome trace format, which
+ * Perfetto and chrome://tracing open directly. Every timed phase that
+ * records into a {@link LatencyHistogram} shows up as a complete event;
+ * collectors and token refreshes also write an instant event when they
+ * start, so one that hangs is visible before it ends.
+ */
+final class TraceRecorder {
+    static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_NAMES = 128;
+    private static final long WRITING = -1;
+
+    private static final String[] NAMES = new String[MAX_NAMES];
+    private static int nameCount;
+
+    private static final AtomicLong cursor = new AtomicLong();
+    private static final AtomicLongArray sequence = new AtomicLongArray(CAPACITY);
+    private static final int[] name = new int[CAPACITY];
+    private static final long[] start = new long[CAPACITY];
+    // -1 for an instant event
+    private static final long[] duration = new long[CAPACITY];
+    private static final long[] arg = new long[CAPACITY];
+    private static final long[] thread = new long[CAPACITY];
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequence.set(i, WRITING);
+        }
+    }
+
+    private TraceRecorder() {}
+
+    // Id for an event name; call once and keep it in a static final field
+    static synchronized int register(String eventName) {
+        for (int i = 0; i < nameCount; i++) {
+            if (NAMES[i].equals(eventName)) {
+                return i;
+            }
+        }
+        if (nameCount == MAX_NAMES) {
+            throw new IllegalStateException("Too many trace event names");
+        }
+        NAMES[nameCount] = eventName;
+        return nameCount++;
+    }
+
+    // A phase that started at startNanos (System.nanoTime) and took durationNanos
+    static void complete(int eventName, long startNanos, long durationNanos, long value) {
+        write(eventName, startNanos, durationNanos, value);
+    }
+
+    static void instant(int eventName, long value) {
+        write(eventName, System.nanoTime(), -1, value);
+    }
+
+    private static void write(int eventName, long startNanos, long durationNanos, long value) {
+        long index = cursor.getAndIncrement();
+        int slot = (int) (index & MASK);
+        sequence.set(slot, WRITING);
+        name[slot] = eventName;
+        start[slot] = startNanos;
+        duration[slot] = durationNanos;
+        arg[slot] = value;
+        thread[slot] = Thread.currentThread().getId();
+        sequence.lazySet(slot, index);
+    }
+
+    // {"traceEvents": [...], "displayTimeUnit": "ms", "otherData": {...}}, oldest event first
+    static String exportJson() throws Exception {
+        long end = cursor.get();
+        long first = Math.max(0, end - CAPACITY);
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        String[] names;
+        synchronized (TraceRecorder.class) {
+            names = new String[nameCount];
+            System.arraycopy(NAMES, 0, names, 0, nameCount);
+        }
+        Map<Long, String> threadNames = new HashMap<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            threadNames.put(t.getId(), t.getName());
+        }
+
+        JsonStreamWriter w = JsonStreamWriter.local();
+        w.beginObject().name("traceEvents").beginArray();
+        Map<Long, Boolean> namedThreads = new HashMap<>();
+        int dropped = 0;
+        for (long index = first; index < end; index++) {
+            int slot = (int) (index & MASK);
+            if (sequence.get(slot) != index) {
+                dropped++;
+                continue;
+            }
+            int eventName = name[slot];
+            long eventStart = start[slot];
+            long eventDuration = duration[slot];
+            long value = arg[slot];
+            long tid = thread[slot];
+            // Rewritten while we read it. Without a load fence a torn slot can still slip
+            // through now and then; it only garbles that one event.
+            if (sequence.get(slot) != index || eventName >= names.length) {
+                dropped++;
+                continue;
+            }
+            if (namedThreads.put(tid, Boolean.TRUE) == null) {
+                String threadName = threadNames.get(tid);
+                w.beginObject()
+                        .name("name").value("thread_name")
+                        .name("ph").value("M")
+                        .name("pid").value(1)
+                        .name("tid").value(tid)
+                        .name("args").beginObject()
+                        .name("name").value(threadName != null ? threadName : "thread-" + tid)
+                        .endObject()
+                        .endObject();
+            }
+            w.beginObject()
+                    .name("name").value(names[eventName])
+                    .name("cat").value("mysdk")
+                    .name("ph").value(eventDuration < 0 ? "i" : "X")
+                    .name("ts").value(eventStart / 1000.0)
+                    .name("pid").value(1)
+                    .name("tid").value(tid);
+            if (eventDuration < 0) {
+                w.name("s").value("t");
+            } else {
+                w.name("dur").value(eventDuration / 1000.0);
+            }
+            w.name("args").beginObject().name("value").value(value).endObject();
+            w.endObject();
+        }
+        w.endArray()
+                .name("displayTimeUnit").value("ms")
+                .name("otherData").beginObject()
+                .name("exportedAtMs").value(nowMillis)
+                .name("exportedAtTraceUs").value(nowNanos / 1000.0)
+                .name("recorded").value(end)
+                .name("skipped").value(dropped)
+                .endObject()
+                .endObject();
+        return new String(w.toByteArray(), Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.mydevicesdk;
+
+import android.location.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Douglas-Peucker simplification of a track of fixes.
+ *
+ * A fix is dropped when it lies within its tolerance of the straight line
+ * between the fixes kept around it. The tolerance of each fix is its own
+ * reported accuracy, but at least the configured minimum, so noisy fixes
+ * are smoothed away while precise turns survive. Distances are computed on
+ * a local flat projection, which is accurate to well under a meter over
+ * the few kilometers a batch covers. The first and last fix are always kept.
+ */
+final class TrajectorySimplifier {
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private TrajectorySimplifier() {}
+
+    static List<Location> simplify(List<Location> points, float minToleranceMeters) {
+        int n = points.size();
+        if (n <= 2) {
+            return new ArrayList<>(points);
+        }
+        double[] x = new double[n];
+        double[] y = new double[n];
+        project(points, x, y);
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        // Explicit stack of [from, to] ranges instead of recursion, long tracks stay cheap
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            int worst = -1;
+            double worstRatio = 1.0;
+            for (int i = from + 1; i < to; i++) {
+                double ratio = distanceToSegment(x, y, i, from, to) / tolerance(points.get(i), minToleranceMeters);
+                if (ratio > worstRatio) {
+                    worstRatio = ratio;
+                    worst = i;
+                }
+            }
+            if (worst >= 0) {
+                keep[worst] = true;
+                stack[top++] = from;
+                stack[top++] = worst;
+                stack[top++] = worst;
+                stack[top++] = to;
+            }
+        }
+
+        List<Location> kept = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                kept.add(points.get(i));
+            }
+        }
+        return kept;
+    }
+
+    private static double tolerance(Location location, float minToleranceMeters) {
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : 0;
+        return Math.max(minToleranceMeters, Math.max(accuracy, 0.1f));
+    }
+
+    // Equirectangular projection around the first fix, in meters
+    private static void project(List<Location> points, double[] x, double[] y) {
+        double lat0 = Math.toRadians(points.get(0).getLatitude());
+        double lng0 = Math.toRadians(points.get(0).getLongitude());
+        double cosLat = Math.cos(lat0);
+        for (int i = 0; i < points.size(); i++) {
+            Location p = points.get(i);
+            double dLng = Math.toRadians(p.getLongitude()) - lng0;
+            // Tracks crossing the antimeridian
+            if (dLng > Math.PI) {
+                dLng -= 2 * Math.PI;
+            } else if (dLng < -Math.PI) {
+                dLng += 2 * Math.PI;
+            }
+            x[i] = dLng * cosLat * EARTH_RADIUS_METERS;
+            y[i] = (Math.toRadians(p.getLatitude()) - lat0) * EARTH_RADIUS_METERS;
+        }
+    }
+
+    private static double distanceToSegment(double[] x, double[] y, int i, int a, int b) {
+        double dx = x[b] - x[a];
+        double dy = y[b] - y[a];
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((x[i] - x[a]) * dx + (y[i] - y[a]) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double px = x[a] + t * dx - x[i];
+        double py = y[a] + t * dy - y[i];
+        return Math.sqrt(px * px + py * py);
+    }
+}
@@ -0,0 +1,99 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deferred uploads through WorkManager.
+ *
+ * When enabled, the uploader thread only persists events to disk and
+ * {@link UploadWorker} drains the queue as periodic work, under the configured
+ * network and battery constraints. Explicit flushes become a single unique
+ * one-off job, so repeated flush calls collapse into one upload. Settings are
+ * persisted so a worker started in a fresh process can initialize the SDK.
+ */
+final class UploadScheduler {
+    private static final String PREFS = "mysdk_upload";
+    private static final String PERIODIC_WORK = "mysdk-upload";
+    private static final String FLUSH_WORK = "mysdk-upload-now";
+    private static final long BACKOFF_DELAY_S = 30;
+
+    private UploadScheduler() {}
+
+    static void enable(Context context, String appId, String baseUrl, boolean requireUnmetered,
+                       boolean requireCharging, boolean requireBatteryNotLow, long periodMinutes) {
+        long period = Math.max(TimeUnit.MILLISECONDS.toMinutes(PeriodicWorkRequest.MIN_PERIODIC_INTERVAL_MILLIS), periodMinutes);
+        prefs(context).edit()
+                .putBoolean("enabled", true)
+                .putString("appId", appId)
+                .putString("baseUrl", baseUrl)
+                .putBoolean("unmetered", requireUnmetered)
+                .putBoolean("charging", requireCharging)
+                .putBoolean("batteryNotLow", requireBatteryNotLow)
+                .putLong("periodMinutes", period)
+                .apply();
+
+        // A wide flex window lets the system line our run up with other jobs
+        long flex = Math.max(TimeUnit.MILLISECONDS.toMinutes(PeriodicWorkRequest.MIN_PERIODIC_FLEX_MILLIS), period / 3);
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(UploadWorker.class,
+                period, TimeUnit.MINUTES, flex, TimeUnit.MINUTES)
+                .setConstraints(constraints(context))
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_S, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(PERIODIC_WORK, ExistingPeriodicWorkPolicy.UPDATE, request);
+    }
+
+    static void disable(Context context) {
+        prefs(context).edit().putBoolean("enabled", false).apply();
+        WorkManager manager = WorkManager.getInstance(context);
+        manager.cancelUniqueWork(PERIODIC_WORK);
+        manager.cancelUniqueWork(FLUSH_WORK);
+    }
+
+    static boolean isEnabled(Context context) {
+        return prefs(context).getBoolean("enabled", false);
+    }
+
+    // Upload as soon as the constraints allow; a flush that is already pending absorbs this one
+    static void requestFlush(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(UploadWorker.class)
+                .setConstraints(constraints(context))
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_S, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(FLUSH_WORK, ExistingWorkPolicy.KEEP, request);
+    }
+
+    static String savedAppId(Context context) {
+        return prefs(context).getString("appId", null);
+    }
+
+    static String savedBaseUrl(Context context) {
+        return prefs(context).getString("baseUrl", null);
+    }
+
+    private static Constraints constraints(Context context) {
+        SharedPreferences prefs = prefs(context);
+        // Unmetered also rules out roaming; otherwise we still stay off roaming networks
+        NetworkType network = prefs.getBoolean("unmetered", true) ? NetworkType.UNMETERED : NetworkType.NOT_ROAMING;
+        return new Constraints.Builder()
+                .setRequiredNetworkType(network)
+                .setRequiresCharging(prefs.getBoolean("charging", false))
+                .setRequiresBatteryNotLow(prefs.getBoolean("batteryNotLow", true))
+                .build();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,49 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the on-disk event queue for {@link UploadScheduler}. The upload itself
+ * still runs on the uploader thread, the only writer of the queue; this worker
+ * asks for a flush and waits for the outcome. A failed upload is retried with
+ * WorkManager's exponential backoff.
+ */
+public final class UploadWorker extends Worker {
+    private static final String TAG = "MySdk";
+    private static final long FLUSH_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(8);
+
+    public UploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        // The app may have been started just for this job
+        if (!MySdk.isInitialized()) {
+            String appId = UploadScheduler.savedAppId(context);
+            String baseUrl = UploadScheduler.savedBaseUrl(context);
+            if (appId == null || baseUrl == null) {
+                Log.w(TAG, "⚠️ Upload job ran before the SDK was configured");
+                return Result.success();
+            }
+            MySdk.init(appId, baseUrl);
+        }
+        try {
+            if (MySdk.getUploader(context).flushAndWait(FLUSH_TIMEOUT_MS)) {
+                return Result.success();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Upload job failed: ", e);
+        }
+        return Result.retry();
+    }
+}
@@ -0,0 +1,242 @@
+package com.mydevicesdk;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nearby access points, mostly from scans other apps already paid for.
+ *
+ * getScanResults is free and includes the results of any app's scan, so
+ * it is read first and merged into a cache deduped by BSSID. startScan is
+ * only called when the cache has gone stale, and only within the budget
+ * Android enforces since API 28: 4 scans per 2 minutes in the foreground,
+ * 1 per 30 minutes in the background. A scan started outside that budget
+ * would fail and still count against it. This collector also never scans
+ * more often than minScanIntervalMs. Results of a scan arrive by broadcast
+ * and are picked up by the next snapshot. Needs fine location.
+ */
+final class WifiScanCollector {
+    private static final String TAG = "MySdk";
+    private static final int FOREGROUND_SCANS = 4;
+    private static final long FOREGROUND_WINDOW_MS = TimeUnit.MINUTES.toMillis(2);
+    private static final long BACKGROUND_WINDOW_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final int LEVEL_HYSTERESIS = 6;
+    private static final int MAX_REPORTED = 20;
+    private static final AtomicLong SCANS = SdkMetrics.counter("wifiScan.scans");
+    private static final AtomicLong THROTTLED = SdkMetrics.counter("wifiScan.throttled");
+
+    /** One access point as last seen. */
+    private static final class AccessPoint {
+        final String bssid;
+        String ssid;
+        int level;
+        int frequency;
+        // Wall-clock time of the newest result for this BSSID
+        long seenAt;
+
+        AccessPoint(String bssid) {
+            this.bssid = bssid;
+        }
+    }
+
+    private static volatile WifiScanCollector instance;
+
+    private final Context context;
+    private final WifiManager wifi;
+    private volatile boolean foreground;
+    private volatile long maxAgeMs = TimeUnit.MINUTES.toMillis(10);
+    private volatile long minScanIntervalMs = TimeUnit.MINUTES.toMillis(5);
+
+    // Guarded by this
+    private final Map<String, AccessPoint> cache = new LinkedHashMap<>();
+    private long updatedAt;
+    // Our own startScan times, newest last
+    private final long[] scans = new long[FOREGROUND_SCANS];
+    private boolean receiverRegistered;
+
+    static WifiScanCollector get(Context context) {
+        WifiScanCollector current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (WifiScanCollector.class) {
+            if (instance == null) {
+                instance = new WifiScanCollector(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    private WifiScanCollector(Context context) {
+        this.context = context;
+        this.wifi = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        Arrays.fill(scans, Long.MIN_VALUE / 2);
+    }
+
+    // The OS budget depends on whether the app is in the foreground; the module reports it
+    void setForeground(boolean foreground) {
+        this.foreground = foreground;
+    }
+
+    // Access points not seen for maxAgeMs are dropped; scans are requested at most every minScanIntervalMs
+    void configure(long maxAgeMs, long minScanIntervalMs) {
+        if (maxAgeMs > 0) {
+            this.maxAgeMs = maxAgeMs;
+        }
+        if (minScanIntervalMs > 0) {
+            this.minScanIntervalMs = minScanIntervalMs;
+        }
+    }
+
+    // Merge the passive results, maybe start a scan for next time, and return the cached access
+    // points, strongest first and at most MAX_REPORTED of them:
+    // {"updatedAt": ms, "aps": {bssid: [ssid, level, frequency]}}. Keyed by BSSID so a delta carries
+    // only the access points that changed. Null without Wi-Fi or permission.
+    synchronized Map<String, Object> snapshot(boolean allowScan) {
+        if (wifi == null || !hasPermission()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            merge(wifi.getScanResults(), now);
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Could not read Wi-Fi scan results: " + e.getMessage());
+        }
+        prune(now);
+        if (allowScan && now - updatedAt > minScanIntervalMs) {
+            maybeScan(now);
+        }
+
+        List<AccessPoint> list = new ArrayList<>(cache.values());
+        Collections.sort(list, new Comparator<AccessPoint>() {
+            @Override
+            public int compare(AccessPoint a, AccessPoint b) {
+                return b.level - a.level;
+            }
+        });
+        Map<String, Object> byBssid = new LinkedHashMap<>();
+        for (int i = 0; i < list.size() && i < MAX_REPORTED; i++) {
+            AccessPoint ap = list.get(i);
+            byBssid.put(ap.bssid, Arrays.<Object>asList(ap.ssid, ap.level, ap.frequency));
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("updatedAt", updatedAt);
+        map.put("aps", byBssid);
+        return map;
+    }
+
+    private void maybeScan(long now) {
+        if (!withinBudget(now)) {
+            THROTTLED.incrementAndGet();
+            return;
+        }
+        registerReceiver();
+        try {
+            // Recorded even if it fails: the OS counts the attempt against the budget
+            System.arraycopy(scans, 1, scans, 0, scans.length - 1);
+            scans[scans.length - 1] = now;
+            if (wifi.startScan()) {
+                SCANS.incrementAndGet();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Wi-Fi scan could not be started: " + e.getMessage());
+        }
+    }
+
+    private boolean withinBudget(long now) {
+        long last = scans[scans.length - 1];
+        if (now - last < minScanIntervalMs) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P
+                || Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && !wifi.isScanThrottleEnabled()) {
+            return true;
+        }
+        if (foreground) {
+            return now - scans[0] >= FOREGROUND_WINDOW_MS;
+        }
+        return now - last >= BACKGROUND_WINDOW_MS;
+    }
+
+    private void merge(List<ScanResult> results, long now) {
+        if (results == null) {
+            return;
+        }
+        // ScanResult.timestamp is microseconds since boot
+        long bootAt = now - SystemClock.elapsedRealtime();
+        for (ScanResult result : results) {
+            if (result.BSSID == null) {
+                continue;
+            }
+            long seenAt = result.timestamp > 0 ? bootAt + result.timestamp / 1000 : now;
+            AccessPoint ap = cache.get(result.BSSID);
+            if (ap == null) {
+                ap = new AccessPoint(result.BSSID);
+                ap.level = result.level;
+                cache.put(result.BSSID, ap);
+            } else if (seenAt <= ap.seenAt) {
+                continue;
+            } else if (Math.abs(result.level - ap.level) >= LEVEL_HYSTERESIS) {
+                // Small moves are noise; keeping the old level keeps the payload unchanged
+                ap.level = result.level;
+            }
+            ap.ssid = result.SSID;
+            ap.frequency = result.frequency;
+            ap.seenAt = seenAt;
+            updatedAt = Math.max(updatedAt, seenAt);
+        }
+    }
+
+    private void prune(long now) {
+        for (Iterator<AccessPoint> it = cache.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().seenAt > maxAgeMs) {
+                it.remove();
+            }
+        }
+    }
+
+    private void registerReceiver() {
+        if (receiverRegistered) {
+            return;
+        }
+        receiverRegistered = true;
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context c, Intent intent) {
+                synchronized (WifiScanCollector.this) {
+                    try {
+                        merge(wifi.getScanResults(), System.currentTimeMillis());
+                    } catch (Exception e) {
+                        Log.w(TAG, "⚠️ Could not read Wi-Fi scan results: " + e.getMessage());
+                    }
+                }
+            }
+        }, new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
+    }
+
+    private boolean hasPermission() {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+}
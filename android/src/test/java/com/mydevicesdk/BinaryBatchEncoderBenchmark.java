@@ -0,0 +1,75 @@
+package com.mydevicesdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode time of an /events body as JSON and as binary-v1, for batches of
+ * realistic network snapshots. The encoded sizes are printed once per
+ * trial. Both are measured before compression, starting from the JSON
+ * records as queued, so binary includes tokenizing them. Run with -prof gc
+ * for bytes allocated per batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryBatchEncoderBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1", "10", "100"})
+    public int events;
+
+    private List<byte[]> records;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        records = Payloads.records(events);
+        int json = json().length;
+        int binary = binary().length;
+        System.out.println(String.format("%n%d events: JSON %d B, %s %d B (%d%%)",
+                events, json, BinaryBatchEncoder.FORMAT, binary, binary * 100 / json));
+    }
+
+    @Benchmark
+    public byte[] json() {
+        // As HttpTransport writes it
+        ByteArrayOutputStream out = new ByteArrayOutputStream(events * 2048);
+        byte[] head = ("{\"apiKey\":\"" + LocalBackend.TOKEN + "\",\"events\":[").getBytes(UTF_8);
+        out.write(head, 0, head.length);
+        for (int i = 0; i < records.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            byte[] record = records.get(i);
+            out.write(record, 0, record.length);
+        }
+        out.write(']');
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] binary() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(events * 256);
+        BinaryBatchEncoder.encode(LocalBackend.TOKEN, records, out);
+        return out.toByteArray();
+    }
+}
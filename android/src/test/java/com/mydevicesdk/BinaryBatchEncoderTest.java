@@ -0,0 +1,213 @@
+package com.mydevicesdk;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BinaryBatchEncoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void realisticBatchDecodesToTheSameEvents() throws Exception {
+        assertRoundTrip(Payloads.records(25));
+    }
+
+    @Test
+    public void escapesNumbersAndNestingSurviveTheRoundTrip() throws Exception {
+        String longPlain = repeat("abcdefghij", 10);
+        String longEscaped = repeat("line\\nbreak \\\"quoted\\\" ", 5);
+        String record = "{ \"s\" : \"caf\u00e9 \\u00e9 \\ud83d\\ude00 \ud83d\ude00\\t\\/\\\\\","
+                + "\"long\":\"" + longPlain + "\",\"longEscaped\":\"" + longEscaped + "\","
+                + "\"k\\u0065y\":1,\"ints\":[0,-1,9223372036854775807,-9223372036854775808,123456789012345678],"
+                + "\"big\":92233720368547758070,\"doubles\":[1.5,-0.25,1e3,2.5E-3,12.0],"
+                + "\"flags\":[true,false,null],\"empty\":{},\"none\":[],\"nested\":[[[]],{\"a\":{\"b\":[1]}}]\n}";
+        assertRoundTrip(Arrays.asList(record.getBytes(UTF_8), "[\"s\",\"s\"]".getBytes(UTF_8)));
+    }
+
+    @Test
+    public void repeatedShortValuesAndKeysGoInTheDictionary() throws Exception {
+        byte[] body = encode(Arrays.asList(
+                "{\"type\":\"LTE\",\"name\":\"once\"}".getBytes(UTF_8),
+                "{\"type\":\"LTE\"}".getBytes(UTF_8)));
+        assertEquals(Arrays.asList("type", "name", "LTE"), new Decoder(body).dictionary());
+    }
+
+    @Test
+    public void malformedRecordsAreRejected() {
+        for (String record : new String[]{"", "{", "{\"a\":}", "{\"a\" 1}", "[1,]", "[1 2]", "tru", "\"open",
+                "{\"a\":1}x", "\"\\q\"", "\"\\u12\"", "-", "{1:2}"}) {
+            try {
+                encode(Collections.singletonList(record.getBytes(UTF_8)));
+                fail("accepted " + record);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertRoundTrip(List<byte[]> records) throws Exception {
+        Decoder decoder = new Decoder(encode(records));
+        List<Object> events = decoder.events();
+        assertEquals("token", decoder.token);
+        assertEquals(records.size(), events.size());
+        for (int i = 0; i < records.size(); i++) {
+            String json = new String(records.get(i), UTF_8).trim();
+            Object expected = normalize(json.startsWith("[") ? new JSONArray(json) : new JSONObject(json));
+            assertEquals(expected, events.get(i));
+        }
+    }
+
+    private static byte[] encode(List<byte[]> records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryBatchEncoder.encode("token", records, out);
+        return out.toByteArray();
+    }
+
+    // org.json values as the decoder produces them: Map, List, Long, Double, String, Boolean, null
+    private static Object normalize(Object value) throws Exception {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            Map<String, Object> map = new LinkedHashMap<>();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                map.put(key, normalize(object.get(key)));
+            }
+            return map;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                list.add(normalize(array.get(i)));
+            }
+            return list;
+        }
+        if (value == JSONObject.NULL) {
+            return null;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger || value instanceof BigDecimal || value instanceof Double || value instanceof Float) {
+            return ((Number) value).doubleValue();
+        }
+        return value;
+    }
+
+    private static String repeat(String s, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    // Reference binary-v1 reader, as the backend implements it
+    private static final class Decoder {
+        private final ByteBuffer in;
+        private final List<String> dictionary = new ArrayList<>();
+        private String token;
+
+        Decoder(byte[] body) {
+            in = ByteBuffer.wrap(body);
+            byte[] magic = new byte[4];
+            in.get(magic);
+            assertEquals("MYB1", new String(magic, UTF_8));
+            long entries = varint();
+            for (int i = 0; i < entries; i++) {
+                dictionary.add(string());
+            }
+            token = string();
+        }
+
+        List<String> dictionary() {
+            return dictionary;
+        }
+
+        List<Object> events() {
+            long count = varint();
+            List<Object> events = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                events.add(value());
+            }
+            assertEquals(0, in.remaining());
+            return events;
+        }
+
+        private Object value() {
+            int tag = in.get();
+            switch (tag) {
+                case 0:
+                    return null;
+                case 1:
+                    return false;
+                case 2:
+                    return true;
+                case 3: {
+                    long n = varint();
+                    return (n >>> 1) ^ -(n & 1);
+                }
+                case 4:
+                    return in.getDouble();
+                case 5:
+                    return string();
+                case 6:
+                    return dictionary.get((int) varint());
+                case 7: {
+                    long fields = varint();
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < fields; i++) {
+                        String key = dictionary.get((int) varint());
+                        map.put(key, value());
+                    }
+                    return map;
+                }
+                case 8: {
+                    long elements = varint();
+                    List<Object> list = new ArrayList<>();
+                    for (int i = 0; i < elements; i++) {
+                        list.add(value());
+                    }
+                    return list;
+                }
+                default:
+                    throw new AssertionError("unknown tag " + tag);
+            }
+        }
+
+        private String string() {
+            byte[] bytes = new byte[(int) varint()];
+            in.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
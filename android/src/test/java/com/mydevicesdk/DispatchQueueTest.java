@@ -0,0 +1,149 @@
+package com.mydevicesdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DispatchQueueTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File dir;
+    private EventUploader uploader;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("mysdk", "test");
+        assertTrue(dir.delete() && dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (uploader != null) {
+            uploader.close();
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void hundredThousandEventsReachTheTransportInOrder() throws Exception {
+        final int producers = 4;
+        final int perProducer = 25_000;
+        FakeBatchSender sender = new FakeBatchSender();
+        uploader = new EventUploader(new File(dir, "events.seg"), sender, 500, 50,
+                64L * 1024 * 1024, 1024, BackpressurePolicy.BLOCK, 10_000);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    assertTrue(uploader.enqueue(("{\"p\":" + producer + ",\"seq\":" + i + "}").getBytes(UTF_8)));
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        uploader.requestFlush();
+
+        assertTrue("events still pending", sender.awaitReceived(producers * perProducer, 60_000));
+        List<String> received = sender.received();
+        assertEquals(producers * perProducer, received.size());
+        int[] next = new int[producers];
+        for (String record : received) {
+            int producer = Integer.parseInt(record.substring(record.indexOf(':') + 1, record.indexOf(',')));
+            int seq = Integer.parseInt(record.substring(record.lastIndexOf(':') + 1, record.length() - 1));
+            assertEquals("out of order for producer " + producer, next[producer], seq);
+            next[producer]++;
+        }
+        assertEquals(0, uploader.droppedEvents());
+        assertEquals(producers * perProducer, uploader.acceptedEvents());
+        assertEquals(uploader.acceptedEvents(), uploader.settledEvents());
+    }
+
+    @Test
+    public void dropNewestRejectsWhenFull() {
+        DispatchQueue<Integer> queue = new DispatchQueue<>(4, BackpressurePolicy.DROP_NEWEST, 0);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i < 4, queue.publish(i));
+        }
+        assertEquals(2, queue.droppedCount());
+        assertEquals(Arrays.asList(0, 1, 2, 3), drainAll(queue));
+    }
+
+    @Test
+    public void dropOldestEvictsTheHead() {
+        DispatchQueue<Integer> queue = new DispatchQueue<>(4, BackpressurePolicy.DROP_OLDEST, 0);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(queue.publish(i));
+        }
+        assertEquals(2, queue.evictedCount());
+        assertEquals(Arrays.asList(2, 3, 4, 5), drainAll(queue));
+    }
+
+    @Test
+    public void blockTimesOutWithoutConsumer() {
+        DispatchQueue<Integer> queue = new DispatchQueue<>(2, BackpressurePolicy.BLOCK, 5);
+        assertTrue(queue.publish(0));
+        assertTrue(queue.publish(1));
+        assertFalse(queue.publish(2));
+        assertEquals(1, queue.droppedCount());
+    }
+
+    @Test
+    public void coalesceKeepsArrivalOrder() {
+        DispatchQueue<Integer> queue = new DispatchQueue<>(4, BackpressurePolicy.COALESCE, 0);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(queue.publish(i));
+        }
+        // 4 replaced by 5 in the overflow slot
+        assertEquals(1, queue.coalescedCount());
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(2, queue.drainTo(out, 2));
+        // The ring has room again, but 5 is still waiting: 6 must not overtake it
+        assertTrue(queue.publish(6));
+        out.addAll(drainAll(queue));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 6), out);
+        assertEquals(2, queue.coalescedCount());
+
+        // Once the overflow slot is empty new elements use the ring again
+        assertTrue(queue.publish(7));
+        assertTrue(queue.publish(8));
+        assertEquals(Arrays.asList(7, 8), drainAll(queue));
+    }
+
+    private static List<Integer> drainAll(DispatchQueue<Integer> queue) {
+        List<Integer> out = new ArrayList<>();
+        while (queue.drainTo(out, 2) > 0) {
+            // keep draining
+        }
+        return out;
+    }
+}
@@ -0,0 +1,161 @@
+package com.mydevicesdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventUploaderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File dir;
+    private final List<EventUploader> uploaders = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("mysdk", "test");
+        assertTrue(dir.delete() && dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (EventUploader uploader : uploaders) {
+            uploader.close();
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void deferredModeWaitsForFlushWithoutSpinning() throws Exception {
+        FakeBatchSender sender = new FakeBatchSender();
+        Set<Thread> before = uploaderThreads();
+        EventUploader uploader = newUploader(sender, 2, 20);
+        Set<Thread> started = uploaderThreads();
+        started.removeAll(before);
+        assertEquals(1, started.size());
+        Thread thread = started.iterator().next();
+        uploader.setDeferred(true);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(uploader.enqueue(("{\"seq\":" + i + "}").getBytes(UTF_8)));
+        }
+
+        // Well past the flush interval: nothing is sent, and the thread stays parked
+        Thread.sleep(100);
+        long cpuBefore = cpuNanos(thread);
+        Thread.sleep(300);
+        long cpuUsed = cpuNanos(thread) - cpuBefore;
+        assertEquals(0, sender.batches());
+        assertTrue("uploader used " + cpuUsed / 1000000 + " ms of CPU while idle", cpuUsed < 50_000_000L);
+
+        assertTrue(uploader.flushAndWait(5000));
+        assertEquals(5, sender.received().size());
+        String trace = TraceRecorder.exportJson();
+        assertTrue(trace.contains("\"queue.dequeue\"") && trace.contains("\"queue.dequeueBytes\""));
+    }
+
+    @Test
+    public void flushAndWaitReportsFailure() throws Exception {
+        FakeBatchSender sender = new FakeBatchSender();
+        sender.respondWith(503);
+        EventUploader uploader = newUploader(sender, 10, 60_000);
+        uploader.setDeferred(true);
+        assertTrue(uploader.enqueue("{}".getBytes(UTF_8)));
+
+        assertFalse(uploader.flushAndWait(5000));
+        assertEquals(1, uploader.queuedEvents());
+    }
+
+    @Test
+    public void closeStopsTheThreadAndKeepsEventsOnDisk() throws Exception {
+        File file = new File(dir, "events.seg");
+        Set<Thread> before = uploaderThreads();
+        EventUploader uploader = new EventUploader(file, new FakeBatchSender(), 10, 60_000,
+                1024 * 1024, 64, BackpressurePolicy.DROP_OLDEST, 0);
+        uploader.setDeferred(true);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(uploader.enqueue(("{\"seq\":" + i + "}").getBytes(UTF_8)));
+        }
+        uploader.close();
+        assertEquals(before, uploaderThreads());
+        assertFalse(uploader.enqueue("{}".getBytes(UTF_8)));
+        assertFalse(uploader.flushAndWait(1000));
+
+        FakeBatchSender sender = new FakeBatchSender();
+        EventUploader reopened = newUploader(sender, 10, 60_000);
+        assertEquals(3, reopened.queuedEvents());
+        assertTrue(reopened.flushAndWait(5000));
+        assertEquals(3, sender.received().size());
+    }
+
+    @Test
+    public void flushEndsWhileProducersKeepEnqueuing() throws Exception {
+        final FakeBatchSender received = new FakeBatchSender();
+        final AtomicReference<EventUploader> target = new AtomicReference<>();
+        // Every upload brings two new events, more than the batch it took off the queue
+        BatchSender sender = new BatchSender() {
+            private int seq = 100;
+
+            @Override
+            public HttpTransport.PostResult send(List<byte[]> records) {
+                for (int i = 0; i < 2; i++) {
+                    target.get().enqueue(("{\"seq\":" + seq++ + "}").getBytes(UTF_8));
+                }
+                return received.send(records);
+            }
+        };
+        EventUploader uploader = newUploader(sender, 1, 60_000);
+        target.set(uploader);
+        uploader.setDeferred(true);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(uploader.enqueue(("{\"seq\":" + i + "}").getBytes(UTF_8)));
+        }
+
+        assertTrue(uploader.flushAndWait(5000));
+        assertTrue(received.received().size() >= 5);
+        assertEquals("{\"seq\":0}", received.received().get(0));
+        assertTrue(uploader.queuedEvents() > 0);
+    }
+
+    private EventUploader newUploader(BatchSender sender, int batchSize, long flushIntervalMs) throws Exception {
+        EventUploader uploader = new EventUploader(new File(dir, "events.seg"), sender, batchSize, flushIntervalMs,
+                1024 * 1024, 64, BackpressurePolicy.DROP_OLDEST, 0);
+        uploaders.add(uploader);
+        return uploader;
+    }
+
+    private static Set<Thread> uploaderThreads() {
+        Set<Thread> threads = new HashSet<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("MySdk-uploader") && t.isAlive()) {
+                threads.add(t);
+            }
+        }
+        return threads;
+    }
+
+    private static long cpuNanos(Thread thread) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long nanos = threads.getThreadCpuTime(thread.getId());
+        assertTrue("thread " + thread.getName() + " ended", nanos >= 0);
+        return nanos;
+    }
+}
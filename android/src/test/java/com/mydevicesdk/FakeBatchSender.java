@@ -0,0 +1,56 @@
+package com.mydevicesdk;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory stand-in for the /events endpoint.
+ *
+ * Keeps every record it was sent, in order, and answers with a fixed
+ * response code.
+ */
+final class FakeBatchSender implements BatchSender {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<String> received = new ArrayList<>();
+    private volatile int responseCode = 200;
+    private int batches;
+
+    void respondWith(int code) {
+        this.responseCode = code;
+    }
+
+    @Override
+    public synchronized HttpTransport.PostResult send(List<byte[]> records) {
+        batches++;
+        if (responseCode / 100 == 2) {
+            for (byte[] record : records) {
+                received.add(new String(record, UTF_8));
+            }
+        }
+        notifyAll();
+        return new HttpTransport.PostResult(responseCode, null);
+    }
+
+    synchronized List<String> received() {
+        return new ArrayList<>(received);
+    }
+
+    synchronized int batches() {
+        return batches;
+    }
+
+    // Wait until at least count records went through; false on timeout
+    synchronized boolean awaitReceived(int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (received.size() < count) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
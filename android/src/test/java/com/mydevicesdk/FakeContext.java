@@ -0,0 +1,193 @@
+package com.mydevicesdk;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plain-JVM Context: a files directory and in-memory SharedPreferences,
+ * enough for the upload path. Everything else keeps the default values of
+ * the unit test android.jar.
+ */
+final class FakeContext extends ContextWrapper {
+    private final File filesDir;
+    private final Map<String, Prefs> prefs = new HashMap<>();
+
+    FakeContext(File filesDir) {
+        super(null);
+        this.filesDir = filesDir;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    @Override
+    public File getNoBackupFilesDir() {
+        return filesDir;
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        Prefs p = prefs.get(name);
+        if (p == null) {
+            p = new Prefs();
+            prefs.put(name, p);
+        }
+        return p;
+    }
+
+    private static final class Prefs implements SharedPreferences {
+        private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            Object v = values.get(key);
+            return v != null ? (String) v : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            Object v = values.get(key);
+            return v != null ? (Set<String>) v : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            Object v = values.get(key);
+            return v != null ? (Integer) v : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            Object v = values.get(key);
+            return v != null ? (Long) v : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            Object v = values.get(key);
+            return v != null ? (Float) v : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            Object v = values.get(key);
+            return v != null ? (Boolean) v : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new PrefsEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private final class PrefsEditor implements Editor {
+            private final Map<String, Object> changes = new HashMap<>();
+            private final Set<String> removed = new HashSet<>();
+            private boolean clear;
+
+            @Override
+            public Editor putString(String key, String value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                return put(key, values != null ? new HashSet<>(values) : null);
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor remove(String key) {
+                removed.add(key);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                clear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                synchronized (Prefs.this) {
+                    if (clear) {
+                        values.clear();
+                    }
+                    for (String key : removed) {
+                        values.remove(key);
+                    }
+                    for (Map.Entry<String, Object> e : changes.entrySet()) {
+                        values.put(e.getKey(), e.getValue());
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+
+            private Editor put(String key, Object value) {
+                if (value == null) {
+                    return remove(key);
+                }
+                changes.put(key, value);
+                return this;
+            }
+        }
+    }
+}
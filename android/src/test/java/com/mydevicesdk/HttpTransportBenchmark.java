@@ -0,0 +1,78 @@
+package com.mydevicesdk;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One event posted to a local server: through the pooled OkHttp transport,
+ * and the way MySdk did it before, a fresh HttpURLConnection per event whose
+ * response is never read. SampleTime mode reports the p50/p99 per call.
+ * The token call is left out: it parses with android.util.JsonReader, which
+ * the unit test android.jar does not implement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpTransportBenchmark {
+    private LocalBackend backend;
+    private String baseUrl;
+    private JSONObject event;
+    private List<byte[]> records;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        backend = new LocalBackend(0);
+        baseUrl = backend.baseUrl();
+        event = Payloads.event(0);
+        records = Collections.singletonList(JsonStreamWriter.local().toBytes(event));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        backend.close();
+    }
+
+    @Benchmark
+    public int okHttp() throws Exception {
+        return HttpTransport.postEvents(baseUrl, LocalBackend.TOKEN, records).code;
+    }
+
+    @Benchmark
+    public int urlConnection() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + "/events").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", "application/json");
+        conn.setDoOutput(true);
+
+        JSONObject sendBody = new JSONObject();
+        sendBody.put("apiKey", LocalBackend.TOKEN);
+        sendBody.put("payload", event);
+
+        OutputStreamWriter out = new OutputStreamWriter(conn.getOutputStream());
+        out.write(sendBody.toString());
+        out.flush();
+        out.close();
+        return conn.getResponseCode();
+    }
+}
@@ -0,0 +1,73 @@
+package com.mydevicesdk;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing one event onto the request stream: the previous way, with a
+ * sendBody JSONObject wrapping the payload, toString() and an
+ * OutputStreamWriter, against {@link JsonStreamWriter}. Run with -prof gc;
+ * gc.alloc.rate.norm is the bytes allocated per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonStreamWriterBenchmark {
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private JSONObject payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        payload = Payloads.event(0);
+    }
+
+    @Benchmark
+    public void jsonObjectToString() throws Exception {
+        JSONObject sendBody = new JSONObject();
+        sendBody.put("apiKey", LocalBackend.TOKEN);
+        sendBody.put("payload", payload);
+        Writer out = new OutputStreamWriter(DISCARD);
+        out.write(sendBody.toString());
+        out.flush();
+    }
+
+    @Benchmark
+    public void streamWriter() throws Exception {
+        JsonStreamWriter w = JsonStreamWriter.local();
+        w.beginObject().name("apiKey").value(LocalBackend.TOKEN).name("payload").value(payload).endObject();
+        w.writeTo(DISCARD);
+    }
+
+    // What sendData does: the record stored in the queue, one exact-size byte[]
+    @Benchmark
+    public byte[] streamWriterRecord() throws Exception {
+        return JsonStreamWriter.local().toBytes(payload);
+    }
+}
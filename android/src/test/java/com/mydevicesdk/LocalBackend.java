@@ -0,0 +1,153 @@
+package com.mydevicesdk;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local stand-in for the backend on a {@link MockWebServer}.
+ *
+ * Answers /get-token and /events, counts the events it receives and, for
+ * events marked with {@link #markSent}, records the time from sendData to
+ * arrival by their data.seq.
+ */
+final class LocalBackend implements Closeable {
+    static final String APP_ID = "bench-app";
+    static final String TOKEN = "local-token";
+
+    private final MockWebServer server = new MockWebServer();
+    private final AtomicLongArray sentAt;
+    private final long[] latencies;
+    private int latencyCount;
+    private int delivered;
+    private int requests;
+
+    LocalBackend(int trackedEvents) throws IOException {
+        this.sentAt = new AtomicLongArray(trackedEvents);
+        this.latencies = new long[trackedEvents];
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    if ("/get-token".equals(request.getPath())) {
+                        return new MockResponse().setBody("{\"token\":\"" + TOKEN + "\"}");
+                    }
+                    if ("/events".equals(request.getPath())) {
+                        onEvents(request);
+                        return new MockResponse().setResponseCode(200);
+                    }
+                    return new MockResponse().setResponseCode(404);
+                } catch (Exception e) {
+                    return new MockResponse().setResponseCode(400);
+                }
+            }
+        });
+        server.start();
+    }
+
+    String baseUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    // Point MySdk at this backend, with a valid token already stored so no /get-token call is needed
+    FakeContext installSdk(File filesDir) {
+        FakeContext context = new FakeContext(filesDir);
+        context.getSharedPreferences("mysdk_token", 0).edit()
+                .putString("token", TOKEN)
+                .putLong("expiry", System.currentTimeMillis() / 1000 + 3600)
+                .putString("appId", APP_ID)
+                .putString("baseUrl", baseUrl())
+                .apply();
+        MySdk.init(APP_ID, baseUrl());
+        return context;
+    }
+
+    void markSent(int seq) {
+        sentAt.set(seq, System.nanoTime());
+    }
+
+    synchronized int delivered() {
+        return delivered;
+    }
+
+    synchronized int requests() {
+        return requests;
+    }
+
+    synchronized boolean awaitDelivered(int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (delivered < count) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    // Send-to-arrival times of the marked events received so far, sorted
+    synchronized long[] latenciesNanos() {
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private void onEvents(RecordedRequest request) throws Exception {
+        long now = System.nanoTime();
+        InputStream in = request.getBody().inputStream();
+        if ("gzip".equals(request.getHeader("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            body.write(chunk, 0, n);
+        }
+        JSONObject json = new JSONObject(body.toString("UTF-8"));
+        // {"apiKey", "events": [...]}, or one {"apiKey", "payload"} as sent before batching
+        JSONArray events = json.has("payload") ? new JSONArray().put(json.get("payload")) : json.getJSONArray("events");
+        synchronized (this) {
+            for (int i = 0; i < events.length(); i++) {
+                JSONObject data = events.getJSONObject(i).optJSONObject("data");
+                int seq = data != null ? data.optInt("seq", -1) : -1;
+                if (seq >= 0 && seq < sentAt.length()) {
+                    long sent = sentAt.get(seq);
+                    if (sent != 0 && latencyCount < latencies.length) {
+                        latencies[latencyCount++] = now - sent;
+                    }
+                }
+            }
+            delivered += events.length();
+            requests++;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mydevicesdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * CPU time to write a JSON /events body through each {@link PayloadCodec},
+ * for 1, 10 and 100 event batches. The bytes on the wire are printed once
+ * per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadCodecBenchmark {
+    @Param({"1", "10", "100"})
+    public int events;
+
+    @Param({"IDENTITY", "GZIP", "DEFLATE_DICT"})
+    public String codec;
+
+    private PayloadCodec payloadCodec;
+    private List<byte[]> records;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        payloadCodec = PayloadCodec.valueOf(codec);
+        records = Payloads.records(events);
+        System.out.println(String.format("%n%s, %d events: %d B on the wire", codec, events, encode()));
+    }
+
+    // As HttpTransport writes the JSON body; returns the encoded size
+    @Benchmark
+    public long encode() throws Exception {
+        Buffer sink = new Buffer();
+        BufferedSink out = payloadCodec.wrap(sink);
+        out.writeUtf8("{\"apiKey\":\"").writeUtf8(LocalBackend.TOKEN).writeUtf8("\",\"events\":[");
+        for (int i = 0; i < records.size(); i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            out.write(records.get(i));
+        }
+        out.writeUtf8("]}");
+        out.close();
+        return sink.size();
+    }
+}
@@ -0,0 +1,91 @@
+package com.mydevicesdk;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Realistic events for tests and benchmarks: what the JS layer sends for one
+ * collection tick, device info plus the getNetworkInfo snapshot and a fix.
+ */
+final class Payloads {
+    private Payloads() {}
+
+    // {"deviceId", "platform", "data": {..., "seq": seq}, "timestamp"}; the values drift a little with seq
+    static JSONObject event(int seq) throws Exception {
+        JSONObject sim = new JSONObject()
+                .put("carrierName", "T-Mobile")
+                .put("displayName", "T-Mobile")
+                .put("simSlotIndex", 0)
+                .put("countryIso", "us");
+        JSONObject network = new JSONObject()
+                .put("simOperatorName", "T-Mobile")
+                .put("simCountryIso", "us")
+                .put("networkOperator", "310260")
+                .put("networkOperatorName", "T-Mobile")
+                .put("isNetworkRoaming", false)
+                .put("networkType", 13)
+                .put("phoneType", 1)
+                .put("dataActivity", seq % 4)
+                .put("dataState", 2)
+                .put("simState", 5)
+                .put("networkClass", "4G")
+                .put("androidNetworkType", "LTE")
+                .put("simCards", new JSONArray().put(sim))
+                .put("ssid", "<unknown ssid>")
+                .put("bssid", "02:00:00:00:00:00")
+                .put("linkSpeed", 433)
+                .put("frequency", 5180)
+                .put("rssi", -55 - seq % 12)
+                .put("signalLevel", 3)
+                .put("isWifiEnabled", true)
+                .put("hasWifi", true)
+                .put("hasCellular", false)
+                .put("isMetered", false)
+                .put("isValidated", true)
+                .put("downstreamBandwidth", 54000)
+                .put("upstreamBandwidth", 12000)
+                .put("networkTypeName", "WIFI")
+                .put("isConnected", true)
+                .put("macAddress", "02:00:00:00:00:00")
+                .put("publicIp", "203.0.113.7");
+        JSONObject location = new JSONObject()
+                .put("latitude", 37.42199 + seq * 1e-5)
+                .put("longitude", -122.08405)
+                .put("accuracy", 14.2)
+                .put("altitude", 12.0)
+                .put("speed", 0.0)
+                .put("provider", "fused");
+        JSONObject data = new JSONObject()
+                .put("brand", "google")
+                .put("model", "Pixel 7")
+                .put("systemVersion", "14")
+                .put("appVersion", "1.2.0")
+                .put("packageName", "com.example.app")
+                .put("totalMemory", 7823458304L)
+                .put("usedMemory", 231456768L + seq * 4096L)
+                .put("isTablet", false)
+                .put("adId", "38400000-8cf0-11bd-b23e-10b96e40000d")
+                .put("androidId", "a1b2c3d4e5f60718")
+                .put("network", new JSONObject().put("android_network_info", network))
+                .put("location", location)
+                .put("timezone", "America/Los_Angeles")
+                .put("seq", seq);
+        return new JSONObject()
+                .put("deviceId", "a1b2c3d4e5f60718")
+                .put("platform", "android")
+                .put("data", data)
+                .put("timestamp", "2026-10-17T10:00:00.000Z");
+    }
+
+    // The same events as queued records
+    static List<byte[]> records(int count) throws Exception {
+        List<byte[]> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(JsonStreamWriter.local().toBytes(event(i)));
+        }
+        return records;
+    }
+}
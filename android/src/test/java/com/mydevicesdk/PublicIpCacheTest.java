@@ -0,0 +1,86 @@
+package com.mydevicesdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PublicIpCacheTest {
+    private MockWebServer server;
+    private PublicIpCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        cache = new PublicIpCache(server.url("/?format=json").toString(), 60_000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void sameNetworkIsServedFromCache() {
+        server.enqueue(ip("198.51.100.1"));
+        assertEquals("198.51.100.1", cache.get(wifi("home", -50)));
+        // Only the signal changed
+        assertEquals("198.51.100.1", cache.get(wifi("home", -70)));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void failedLookupAfterNetworkChangeReportsNoIp() {
+        server.enqueue(ip("198.51.100.1"));
+        assertEquals("198.51.100.1", cache.get(wifi("home", -50)));
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        assertNull(cache.get(cellular()));
+        server.enqueue(new MockResponse().setBody("{}"));
+        assertNull(cache.get(cellular()));
+
+        // Nothing was cached for the new network, so it is looked up again
+        server.enqueue(ip("203.0.113.7"));
+        assertEquals("203.0.113.7", cache.get(cellular()));
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void unreachableLookupAfterNetworkChangeReportsNoIp() throws Exception {
+        server.enqueue(ip("198.51.100.1"));
+        assertEquals("198.51.100.1", cache.get(wifi("home", -50)));
+
+        server.shutdown();
+        assertNull(cache.get(cellular()));
+    }
+
+    private static MockResponse ip(String ip) {
+        return new MockResponse().setBody("{\"ip\":\"" + ip + "\"}");
+    }
+
+    private static Map<String, Object> wifi(String ssid, int rssi) {
+        Map<String, Object> network = new LinkedHashMap<>();
+        network.put("hasWifi", true);
+        network.put("hasCellular", false);
+        network.put("ssid", ssid);
+        network.put("rssi", rssi);
+        return network;
+    }
+
+    private static Map<String, Object> cellular() {
+        Map<String, Object> network = new LinkedHashMap<>();
+        network.put("hasWifi", false);
+        network.put("hasCellular", true);
+        network.put("networkOperator", "20408");
+        return network;
+    }
+}
@@ -0,0 +1,138 @@
+package com.mydevicesdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotDeltaTest {
+
+    @Test
+    public void deltasRebuildEverySnapshot() {
+        SnapshotDelta encoder = new SnapshotDelta(1000);
+        Map<Long, Map<String, Object>> server = new HashMap<>();
+        Random random = new Random(42);
+        long sequence = 0;
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> state = snapshot(random);
+            // The server has received everything sent so far
+            encoder.acknowledge(sequence, 0);
+            SnapshotDelta.Encoded encoded = encoder.encode(state);
+            assertEquals(state, rebuild(server, encoded));
+            encoder.sent(encoded, state, ++sequence);
+        }
+    }
+
+    @Test
+    public void firstSampleAndEveryNthAreKeyframes() {
+        SnapshotDelta encoder = new SnapshotDelta(3);
+        List<Boolean> keyframes = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            encoder.acknowledge(i, 0);
+            SnapshotDelta.Encoded encoded = encoder.encode(Collections.<String, Object>singletonMap("n", i));
+            encoder.sent(encoded, Collections.<String, Object>singletonMap("n", i), i + 1);
+            keyframes.add(encoded.keyframe);
+        }
+        assertEquals(Arrays.asList(true, false, false, true, false, false, true), keyframes);
+    }
+
+    @Test
+    public void deltaIsAgainstTheLastSettledSnapshot() {
+        SnapshotDelta encoder = new SnapshotDelta(100);
+        Map<String, Object> first = state("a", 1, "b", 1);
+        SnapshotDelta.Encoded encoded = encoder.encode(first);
+        encoder.sent(encoded, first, 1);
+        encoder.acknowledge(1, 0);
+
+        // Sent but not yet settled: the next delta must not build on it
+        Map<String, Object> second = state("a", 2, "b", 1);
+        encoded = encoder.encode(second);
+        encoder.sent(encoded, second, 2);
+        assertEquals(encoded.version - 1, encoded.baseVersion);
+
+        Map<String, Object> third = state("a", 2, "b", 3);
+        encoded = encoder.encode(third);
+        assertFalse(encoded.keyframe);
+        assertEquals(0, encoded.baseVersion);
+        assertEquals(state("a", 2, "b", 3), encoded.changed);
+        assertEquals(third, SnapshotDelta.apply(first, encoded.changed, encoded.removed));
+    }
+
+    @Test
+    public void lostEventsForceAKeyframe() {
+        SnapshotDelta encoder = new SnapshotDelta(100);
+        encoder.acknowledge(0, 0);
+        Map<String, Object> first = state("a", 1);
+        encoder.sent(encoder.encode(first), first, 1);
+        encoder.acknowledge(1, 0);
+        assertFalse(encoder.encode(first).keyframe);
+
+        encoder.acknowledge(1, 1);
+        assertTrue(encoder.encode(first).keyframe);
+    }
+
+    @Test
+    public void removedKeysAreListedAsPaths() {
+        SnapshotDelta encoder = new SnapshotDelta(100);
+        Map<String, Object> base = state("a", 1, "net", state("ssid", "x", "rssi", -50));
+        encoder.sent(encoder.encode(base), base, 1);
+        encoder.acknowledge(1, 0);
+
+        Map<String, Object> next = state("net", state("ssid", "x"));
+        SnapshotDelta.Encoded encoded = encoder.encode(next);
+        assertTrue(encoded.changed.isEmpty());
+        assertEquals(Arrays.asList(Arrays.asList("net", "rssi"), Collections.singletonList("a")), encoded.removed);
+        assertEquals(next, SnapshotDelta.apply(base, encoded.changed, encoded.removed));
+    }
+
+    // What the server does: keyframes replace the state, deltas apply to the state at baseVersion
+    private static Map<String, Object> rebuild(Map<Long, Map<String, Object>> server, SnapshotDelta.Encoded encoded) {
+        Map<String, Object> state;
+        if (encoded.keyframe) {
+            state = encoded.changed;
+        } else {
+            Map<String, Object> base = server.get(encoded.baseVersion);
+            assertTrue("unknown base " + encoded.baseVersion, base != null);
+            state = SnapshotDelta.apply(base, encoded.changed, encoded.removed);
+        }
+        server.put(encoded.version, state);
+        return state;
+    }
+
+    private static Map<String, Object> snapshot(Random random) {
+        Map<String, Object> wifi = new LinkedHashMap<>();
+        wifi.put("ssid", random.nextInt(4) == 0 ? "guest" : "home");
+        wifi.put("rssi", -40 - random.nextInt(3));
+        if (random.nextBoolean()) {
+            wifi.put("linkSpeed", 72);
+        }
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("brand", "google");
+        state.put("battery", 100 - random.nextInt(2));
+        state.put("network", Collections.<String, Object>singletonMap("android_network_info", wifi));
+        if (random.nextInt(3) == 0) {
+            state.put("location", state("latitude", 52.0 + random.nextInt(2), "longitude", 4.0));
+        } else {
+            state.put("location", null);
+        }
+        return state;
+    }
+
+    private static Map<String, Object> state(Object... keysAndValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,129 @@
+package com.mydevicesdk;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Load test of the whole send path: concurrent MySdk.sendData calls through
+ * the dispatch queue, disk queue, batching and OkHttp into a
+ * {@link LocalBackend}.
+ *
+ * Reports delivered events per second, p50/p99 time from sendData to
+ * arrival at the server, bytes allocated per event (by the sendData callers
+ * and the SDK's own threads) and thread counts. Skipped unless run with
+ * -Pmysdk.loadTest=true; -Pmysdk.load.minEventsPerSec and -Pmysdk.load.maxP99Ms
+ * turn the numbers into a pass/fail gate.
+ */
+public class UploadLoadTest {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void concurrentSendData() throws Exception {
+        assumeTrue("load test, run with -Pmysdk.loadTest=true", Boolean.getBoolean("mysdk.loadTest"));
+        final int threads = Integer.getInteger("mysdk.load.threads", 8);
+        final int perThread = Integer.getInteger("mysdk.load.events", 5000);
+        final int warmup = 2000;
+        int total = threads * perThread;
+
+        File dir = File.createTempFile("mysdk", "load");
+        assertTrue(dir.delete() && dir.mkdirs());
+        try (LocalBackend backend = new LocalBackend(warmup + total)) {
+            final FakeContext context = backend.installSdk(dir);
+            MySdk.configureUpload(200, 1000, 256L * 1024 * 1024);
+            MySdk.configureBackpressure(BackpressurePolicy.BLOCK, 4096, 1000);
+
+            for (int i = 0; i < warmup; i++) {
+                MySdk.sendData(context, Payloads.event(i));
+            }
+            MySdk.flush(context);
+            assertTrue("warm-up events not delivered", backend.awaitDelivered(warmup, 60_000));
+
+            long sdkBytesBefore = sdkThreadAllocatedBytes();
+            THREADS.resetPeakThreadCount();
+            final AtomicLong callerBytes = new AtomicLong();
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int first = warmup + t * perThread;
+                Thread producer = new Thread(() -> {
+                    long id = Thread.currentThread().getId();
+                    long bytes = 0;
+                    try {
+                        start.await();
+                        for (int seq = first; seq < first + perThread; seq++) {
+                            JSONObject event = Payloads.event(seq);
+                            long before = THREADS.getThreadAllocatedBytes(id);
+                            backend.markSent(seq);
+                            MySdk.sendData(context, event);
+                            bytes += THREADS.getThreadAllocatedBytes(id) - before;
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    callerBytes.addAndGet(bytes);
+                }, "load-" + t);
+                producer.start();
+                producers.add(producer);
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            MySdk.flush(context);
+            assertTrue("events not delivered", backend.awaitDelivered(warmup + total, 300_000));
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+            long sdkBytes = sdkThreadAllocatedBytes() - sdkBytesBefore;
+
+            long[] latencies = backend.latenciesNanos();
+            double eventsPerSec = total / seconds;
+            double p50Ms = LocalBackend.percentile(latencies, 0.50) / 1e6;
+            double p99Ms = LocalBackend.percentile(latencies, 0.99) / 1e6;
+            System.out.println(String.format(Locale.US,
+                    "MySdk load: %d threads x %d events in %.2f s, %.0f events/s, latency p50 %.1f ms p99 %.1f ms, "
+                            + "%d B/event (sendData %d, SDK threads %d), %d requests, threads: %d SDK, %d peak",
+                    threads, perThread, seconds, eventsPerSec, p50Ms, p99Ms,
+                    (callerBytes.get() + sdkBytes) / total, callerBytes.get() / total, sdkBytes / total,
+                    backend.requests(), sdkThreadIds().length, THREADS.getPeakThreadCount()));
+
+            double minEventsPerSec = Double.parseDouble(System.getProperty("mysdk.load.minEventsPerSec", "0"));
+            double maxP99Ms = Double.parseDouble(System.getProperty("mysdk.load.maxP99Ms", "0"));
+            assertTrue("throughput below budget: " + eventsPerSec, eventsPerSec >= minEventsPerSec);
+            assertTrue("p99 latency above budget: " + p99Ms, maxP99Ms <= 0 || p99Ms <= maxP99Ms);
+        }
+    }
+
+    private static long sdkThreadAllocatedBytes() {
+        long bytes = 0;
+        for (long id : sdkThreadIds()) {
+            bytes += Math.max(0, THREADS.getThreadAllocatedBytes(id));
+        }
+        return bytes;
+    }
+
+    private static long[] sdkThreadIds() {
+        List<Long> ids = new ArrayList<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("MySdk-")) {
+                ids.add(t.getId());
+            }
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+}
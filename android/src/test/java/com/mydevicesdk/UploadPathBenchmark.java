@@ -0,0 +1,71 @@
+package com.mydevicesdk;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sustained MySdk.sendData throughput from 4 threads, with the uploader
+ * posting to a {@link LocalBackend}. The BLOCK policy makes callers wait
+ * for the uploader once the dispatch queue is full, so the score tracks what
+ * the whole pipeline keeps up with. Run with -prof gc for allocations per
+ * call; note that it also counts the in-process server. UploadLoadTest
+ * reports latency percentiles and SDK-only allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class UploadPathBenchmark {
+    private static final int PAYLOADS = 256;
+
+    private LocalBackend backend;
+    private FakeContext context;
+    private JSONObject[] payloads;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File dir = File.createTempFile("mysdk", "bench");
+        dir.delete();
+        dir.mkdirs();
+        backend = new LocalBackend(0);
+        context = backend.installSdk(dir);
+        MySdk.configureUpload(200, 1000, 64L * 1024 * 1024);
+        MySdk.configureBackpressure(BackpressurePolicy.BLOCK, 4096, 1000);
+        // The payloads repeat, dedup would drop them
+        MySdk.configureDedup(0);
+        payloads = new JSONObject[PAYLOADS];
+        for (int i = 0; i < PAYLOADS; i++) {
+            payloads[i] = Payloads.event(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        backend.close();
+    }
+
+    @Benchmark
+    public void sendData() {
+        MySdk.sendData(context, payloads[next.getAndIncrement() & (PAYLOADS - 1)]);
+    }
+}
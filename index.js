@@ -13,6 +13,7 @@ let deviceInfoCache = null;
 let networkInfoCache = null;
 let cacheExpiry = 0;
 let sendDataInterval = null;
+let nativeCollectionActive = false;
 const sendDataIntervalMs = 60000 * 3; // 1 minute
 
 // Logging utilities
@@ -122,6 +123,12 @@ async function safeCallMethodAsync(obj, method, args = [], fallback = null, cont
   }
 }
 
+// Exponential backoff with full jitter, so devices that failed together don't retry together
+function backoff(attempt, baseDelay) {
+  const ceiling = Math.min(60000, baseDelay * 2 ** (attempt - 1));
+  return new Promise(resolve => setTimeout(resolve, Math.random() * ceiling));
+}
+
 // Enhanced fetch with proper timeout handling
 async function fetchWithTimeout(url, options = {}, timeout = 30000) {
   const controller = new AbortController();
@@ -314,6 +321,65 @@ async function getOptimizedNetworkInfo() {
   }, {}, 'NetworkInfo');
 }
 
+// Device fields that don't change while the app runs; never rejects
+async function collectStaticDeviceInfo() {
+  // Generate fallback device ID first
+  let deviceId = `fallback_${Platform.OS}_${Date.now()}_${Math.random().toString(36).substr(2, 9)}`;
+
+  try {
+    const uniqueId = await DeviceInfo.getUniqueId();
+    if (uniqueId) {
+      deviceId = uniqueId;
+      logSuccess('Device', 'Device ID obtained:', deviceId);
+    } else {
+      logWarning('Device', 'DeviceInfo.getUniqueId() returned null, using fallback:', deviceId);
+    }
+  } catch (error) {
+    logWarning('Device', 'DeviceInfo.getUniqueId() failed, using fallback:', deviceId, error.message);
+  }
+
+  // Collect all device info independently - don't let failures cascade
+  const [essentialInfo, hardwareInfo] = await Promise.allSettled([
+    Promise.allSettled([
+      safeExecuteAsync(() => DeviceInfo.getBrand(), "Unknown", 'Brand'),
+      safeExecuteAsync(() => DeviceInfo.getModel(), "Unknown", 'Model'),
+      safeExecuteAsync(() => DeviceInfo.getSystemName(), Platform.OS, 'SystemName'),
+      safeExecuteAsync(() => DeviceInfo.getSystemVersion(), "Unknown", 'SystemVersion'),
+      safeExecuteAsync(() => DeviceInfo.getVersion(), "1.0.0", 'AppVersion'),
+      safeExecuteAsync(() => DeviceInfo.getBuildNumber(), "1", 'BuildNumber'),
+      safeExecuteAsync(() => DeviceInfo.getBundleId(), "unknown.package", 'BundleId'),
+      safeExecuteAsync(() => DeviceInfo.getManufacturer(), "Unknown", 'Manufacturer'),
+      safeExecuteAsync(() => DeviceInfo.getDeviceName(), "Unknown", 'DeviceName'),
+    ]),
+    Promise.allSettled([
+      safeExecuteAsync(() => DeviceInfo.getTotalMemory(), null, 'TotalMemory'),
+      safeExecuteAsync(() => DeviceInfo.getUsedMemory(), null, 'UsedMemory'),
+      safeExecuteAsync(() => DeviceInfo.isTablet(), false, 'IsTablet'),
+    ]),
+  ]);
+
+  // Process results with fallbacks
+  const essentialResults = essentialInfo.status === "fulfilled" ? essentialInfo.value : [];
+  const hardwareResults = hardwareInfo.status === "fulfilled" ? hardwareInfo.value : [];
+
+  return {
+    deviceId,
+    brand: essentialResults[0]?.status === "fulfilled" ? essentialResults[0].value : "Unknown",
+    model: essentialResults[1]?.status === "fulfilled" ? essentialResults[1].value : "Unknown",
+    systemName: essentialResults[2]?.status === "fulfilled" ? essentialResults[2].value : Platform.OS,
+    systemVersion: essentialResults[3]?.status === "fulfilled" ? essentialResults[3].value : "Unknown",
+    appVersion: essentialResults[4]?.status === "fulfilled" ? essentialResults[4].value : "1.0.0",
+    buildNumber: essentialResults[5]?.status === "fulfilled" ? essentialResults[5].value : "1",
+    packageName: essentialResults[6]?.status === "fulfilled" ? essentialResults[6].value : "unknown.package",
+    manufacturer: essentialResults[7]?.status === "fulfilled" ? essentialResults[7].value : "Unknown",
+    deviceName: essentialResults[8]?.status === "fulfilled" ? essentialResults[8].value : "Unknown",
+    deviceType: "Handset",
+    totalMemory: hardwareResults[0]?.status === "fulfilled" ? hardwareResults[0].value : null,
+    usedMemory: hardwareResults[1]?.status === "fulfilled" ? hardwareResults[1].value : null,
+    isTablet: hardwareResults[2]?.status === "fulfilled" ? hardwareResults[2].value : false,
+  };
+}
+
 async function collectDeviceDataFast() {
   return safeExecuteAsync(async () => {
     logInfo('Device', 'Starting device data collection...');
@@ -335,65 +401,17 @@ async function collectDeviceDataFast() {
 
     logInfo('Device', 'Collecting fresh device data...');
 
-    // Generate fallback device ID first
-    let deviceId = `fallback_${Platform.OS}_${Date.now()}_${Math.random().toString(36).substr(2, 9)}`;
-
-    try {
-      const uniqueId = await DeviceInfo.getUniqueId();
-      if (uniqueId) {
-        deviceId = uniqueId;
-        logSuccess('Device', 'Device ID obtained:', deviceId);
-      } else {
-        logWarning('Device', 'DeviceInfo.getUniqueId() returned null, using fallback:', deviceId);
-      }
-    } catch (error) {
-      logWarning('Device', 'DeviceInfo.getUniqueId() failed, using fallback:', deviceId, error.message);
-    }
-
-    // Collect all device info independently - don't let failures cascade
-    const [essentialInfo, hardwareInfo, network, location, adId] = await Promise.allSettled([
-      Promise.allSettled([
-        safeExecuteAsync(() => DeviceInfo.getBrand(), "Unknown", 'Brand'),
-        safeExecuteAsync(() => DeviceInfo.getModel(), "Unknown", 'Model'),
-        safeExecuteAsync(() => DeviceInfo.getSystemName(), Platform.OS, 'SystemName'),
-        safeExecuteAsync(() => DeviceInfo.getSystemVersion(), "Unknown", 'SystemVersion'),
-        safeExecuteAsync(() => DeviceInfo.getVersion(), "1.0.0", 'AppVersion'),
-        safeExecuteAsync(() => DeviceInfo.getBuildNumber(), "1", 'BuildNumber'),
-        safeExecuteAsync(() => DeviceInfo.getBundleId(), "unknown.package", 'BundleId'),
-        safeExecuteAsync(() => DeviceInfo.getManufacturer(), "Unknown", 'Manufacturer'),
-        safeExecuteAsync(() => DeviceInfo.getDeviceName(), "Unknown", 'DeviceName'),
-      ]),
-      Promise.allSettled([
-        safeExecuteAsync(() => DeviceInfo.getTotalMemory(), null, 'TotalMemory'),
-        safeExecuteAsync(() => DeviceInfo.getUsedMemory(), null, 'UsedMemory'),
-        safeExecuteAsync(() => DeviceInfo.isTablet(), false, 'IsTablet'),
-      ]),
+    const [staticInfo, network, location, adId] = await Promise.allSettled([
+      collectStaticDeviceInfo(),
       getOptimizedNetworkInfo(),
       getLocationFast(),
       getAdIdFast(),
     ]);
 
-    // Process results with fallbacks
-    const essentialResults = essentialInfo.status === "fulfilled" ? essentialInfo.value : [];
-    const hardwareResults = hardwareInfo.status === "fulfilled" ? hardwareInfo.value : [];
-
     const deviceData = {
-      deviceId,
-      brand: essentialResults[0]?.status === "fulfilled" ? essentialResults[0].value : "Unknown",
-      model: essentialResults[1]?.status === "fulfilled" ? essentialResults[1].value : "Unknown",
-      systemName: essentialResults[2]?.status === "fulfilled" ? essentialResults[2].value : Platform.OS,
-      systemVersion: essentialResults[3]?.status === "fulfilled" ? essentialResults[3].value : "Unknown",
-      appVersion: essentialResults[4]?.status === "fulfilled" ? essentialResults[4].value : "1.0.0",
-      buildNumber: essentialResults[5]?.status === "fulfilled" ? essentialResults[5].value : "1",
-      packageName: essentialResults[6]?.status === "fulfilled" ? essentialResults[6].value : "unknown.package",
-      manufacturer: essentialResults[7]?.status === "fulfilled" ? essentialResults[7].value : "Unknown",
-      deviceName: essentialResults[8]?.status === "fulfilled" ? essentialResults[8].value : "Unknown",
-      deviceType: "Handset",
-      totalMemory: hardwareResults[0]?.status === "fulfilled" ? hardwareResults[0].value : null,
-      usedMemory: hardwareResults[1]?.status === "fulfilled" ? hardwareResults[1].value : null,
-      isTablet: hardwareResults[2]?.status === "fulfilled" ? hardwareResults[2].value : false,
+      ...staticInfo.value,
       adId: adId.status === "fulfilled" ? adId.value : null,
-      androidId: Platform.OS === "android" ? deviceId : null,
+      androidId: Platform.OS === "android" ? staticInfo.value.deviceId : null,
       network: network.status === "fulfilled" ? network.value : null,
       location: location.status === "fulfilled" ? location.value : null,
       timestamp: new Date().toISOString(),
@@ -452,7 +470,7 @@ async function getToken(deviceId, maxRetries = 3, retryDelay = 3000) {
         if (!res.ok) {
           if (res.status === 500 && attempt < maxRetries) {
             logWarning('Token', `Server error (500) on attempt ${attempt}/${maxRetries}, retrying...`);
-            await new Promise(resolve => setTimeout(resolve, retryDelay));
+            await backoff(attempt, retryDelay);
             continue;
           }
           throw new Error(`Failed to get token: ${res.status}`);
@@ -470,7 +488,7 @@ async function getToken(deviceId, maxRetries = 3, retryDelay = 3000) {
           logError('Token', 'All token retrieval attempts failed');
           return null;
         }
-        await new Promise(resolve => setTimeout(resolve, retryDelay));
+        await backoff(attempt, retryDelay);
       }
     }
   }, null, 'TokenRetrieval');
@@ -495,34 +513,71 @@ function init(id, contactValue = null) {
       logInfo('Init', 'Cleared previous sendData interval');
     }
 
-    // Initial data send - don't let failure prevent initialization
-    safeExecuteAsync(async () => {
-      const result = await sendData();
-      if (result.success) {
-        logSuccess('Init', 'Initial data send completed successfully');
-      } else {
-        logWarning('Init', 'Initial data send failed but continuing initialization');
-      }
-    }, null, 'InitialDataSend');
-
-    sendDataInterval = setInterval(async () => {
-      const result = await safeExecuteAsync(async () => {
-        return await sendData();
-      }, { success: false, error: 'Scheduled send failed' }, 'ScheduledDataSend');
+    if (nativeCollectionActive) {
+      safeCallMethodAsync(MySdk, 'stopCollection', [], null, 'NativeCollection');
+      nativeCollectionActive = false;
+    }
 
-      if (result.success) {
-        logScheduler('Schedule', 'Scheduled sendData executed successfully');
-      } else {
-        logError('Schedule', 'Scheduled sendData failed:', result.error?.message || 'Unknown error');
-      }
-    }, sendDataIntervalMs);
+    // On Android the native engine samples and uploads on its own; JS only configures it once
+    if (Platform.OS === "android" && MySdk?.startCollection) {
+      startNativeCollection().then(started => {
+        if (!started && appId === id) {
+          logWarning('Init', 'Native collection unavailable, falling back to JS scheduler');
+          startJsCollection();
+        }
+      });
+      logSuccess('Init', 'SDK initialization completed successfully');
+      return true;
+    }
 
-    logScheduler('Init', `Scheduled sendData to run every ${sendDataIntervalMs}ms`);
+    startJsCollection();
     logSuccess('Init', 'SDK initialization completed successfully');
     return true;
   }, false, 'SDKInitialization');
 }
 
+function startJsCollection() {
+  // Initial data send - don't let failure prevent initialization
+  safeExecuteAsync(async () => {
+    const result = await sendData();
+    if (result.success) {
+      logSuccess('Init', 'Initial data send completed successfully');
+    } else {
+      logWarning('Init', 'Initial data send failed but continuing initialization');
+    }
+  }, null, 'InitialDataSend');
+
+  sendDataInterval = setInterval(async () => {
+    const result = await safeExecuteAsync(async () => {
+      return await sendData();
+    }, { success: false, error: 'Scheduled send failed' }, 'ScheduledDataSend');
+
+    if (result.success) {
+      logScheduler('Schedule', 'Scheduled sendData executed successfully');
+    } else {
+      logError('Schedule', 'Scheduled sendData failed:', result.error?.message || 'Unknown error');
+    }
+  }, sendDataIntervalMs);
+
+  logScheduler('Init', `Scheduled sendData to run every ${sendDataIntervalMs}ms`);
+}
+
+async function startNativeCollection() {
+  return safeExecuteAsync(async () => {
+    const device = await collectStaticDeviceInfo();
+    await MySdk.startCollection({
+      appId,
+      baseUrl: INTERNAL_BASE_URL,
+      intervalMs: sendDataIntervalMs,
+      device,
+      contact,
+    });
+    nativeCollectionActive = true;
+    logScheduler('Init', `Native collection scheduled every ${sendDataIntervalMs}ms`);
+    return true;
+  }, false, 'NativeCollection');
+}
+
 async function sendData(extraPayload = {}, maxRetries = 3, retryDelay = 1000) {
   return safeExecuteAsync(async () => {
     logInfo('SendData', 'Starting data transmission...');
@@ -532,6 +587,13 @@ async function sendData(extraPayload = {}, maxRetries = 3, retryDelay = 1000) {
       throw new Error("SDK not initialized. Call init(appId) first");
     }
 
+    // The native engine samples, dedups and uploads; bursts of calls fold into one event
+    if (nativeCollectionActive && MySdk?.collectNow) {
+      MySdk.collectNow(extraPayload || {});
+      logSuccess('SendData', 'Sample queued with native collector');
+      return { success: true, queued: true, attempts: 0 };
+    }
+
     // Collect device data - this should never fail completely
     logInfo('SendData', 'Collecting device data...');
     const data = await collectDeviceDataFast();
@@ -605,7 +667,7 @@ async function sendData(extraPayload = {}, maxRetries = 3, retryDelay = 1000) {
         if (!res.ok) {
           if (res.status === 500 && attempt < maxRetries) {
             logWarning('SendData', `Server error (500) on attempt ${attempt}/${maxRetries}, retrying...`);
-            await new Promise(resolve => setTimeout(resolve, retryDelay));
+            await backoff(attempt, retryDelay);
             continue;
           }
           throw new Error(`Failed to send data: ${res.status}`);
@@ -639,7 +701,7 @@ async function sendData(extraPayload = {}, maxRetries = 3, retryDelay = 1000) {
             attempts: attempt,
           };
         }
-        await new Promise(resolve => setTimeout(resolve, retryDelay));
+        await backoff(attempt, retryDelay);
       }
     }
   }, error => ({
@@ -663,6 +725,12 @@ async function sendData(extraPayload = {}, maxRetries = 3, retryDelay = 1000) {
 function stopSendingData() {
   return safeExecute(() => {
     logInfo('Stop', 'Stopping data transmission...');
+    if (nativeCollectionActive) {
+      safeCallMethodAsync(MySdk, 'stopCollection', [], null, 'NativeCollection');
+      nativeCollectionActive = false;
+      logSuccess('Stop', 'Native collection stopped successfully');
+      return true;
+    }
     if (sendDataInterval) {
       clearInterval(sendDataInterval);
       sendDataInterval = null;
@@ -711,6 +779,7 @@ async function healthCheck() {
         contact: contact || null,
         intervalMs: sendDataIntervalMs,
         hasActiveInterval: !!sendDataInterval,
+        nativeCollection: nativeCollectionActive,
       },
       cache: {
         deviceInfoCached: !!deviceInfoCache,
@@ -720,18 +789,67 @@ async function healthCheck() {
       },
       modules: { MySdk: !!MySdk, DeviceInfo: !!DeviceInfo, NetInfo: !!NetInfo },
       platform: Platform.OS,
+      native: MySdk?.getMetrics ? await safeCallMethodAsync(MySdk, 'getMetrics', [], null, 'NativeMetrics') : null,
     };
     logInfo('Health', 'Health check completed:', health);
     return health;
   }, { error: "Health check failed", timestamp: new Date().toISOString() }, 'HealthCheck');
 }
 
+// Log a custom event. With native collection it goes straight to the native queue and is uploaded
+// with the next batch, without collecting device data; otherwise it is sent through sendData.
+async function logEvent(event = {}) {
+  return safeExecuteAsync(async () => {
+    if (!appId) {
+      throw new Error("SDK not initialized. Call init(appId) first");
+    }
+    if (nativeCollectionActive && MySdk?.enqueueEvent) {
+      MySdk.enqueueEvent(event);
+      return { success: true, queued: true, attempts: 0 };
+    }
+    return sendData(event);
+  }, { success: false, error: { message: "Failed to log event", timestamp: new Date().toISOString() } }, 'LogEvent');
+}
+
+// Stream location natively as simplified tracks (Android). The location permission must already be granted.
+async function startLocationTracking(options = {}) {
+  return safeExecuteAsync(async () => {
+    if (!appId) {
+      throw new Error("SDK not initialized. Call init(appId) first");
+    }
+    if (Platform.OS !== 'android' || !MySdk?.startLocationStream) {
+      logWarning('Location', 'Location tracking is only available on Android');
+      return false;
+    }
+    await MySdk.startLocationStream({ ...options, appId, baseUrl: INTERNAL_BASE_URL });
+    logSuccess('Location', 'Location tracking started');
+    return true;
+  }, false, 'LocationTracking');
+}
+
+function stopLocationTracking() {
+  return safeExecute(() => {
+    if (MySdk?.stopLocationStream) {
+      MySdk.stopLocationStream();
+    }
+  }, null, 'LocationTracking');
+}
+
+// Native flight recorder as Chrome trace JSON, to open in ui.perfetto.dev or chrome://tracing
+async function dumpTrace() {
+  return safeCallMethodAsync(MySdk, 'dumpTrace', [], null, 'Trace');
+}
+
 export default {
   init,
   sendData,
+  logEvent,
+  startLocationTracking,
+  stopLocationTracking,
   stopSendingData,
   testNativeModule,
   healthCheck,
+  dumpTrace,
   safeExecute,
   safeExecuteAsync,
   logSuccess,